@@ -0,0 +1,115 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import book.Polyglot;
+import book.PolyglotBook;
+import chess.ChessMatch;
+import chess.Move;
+
+/**
+ * Polyglot book lookups in a book of 4M entries (64 MB) made of random positions:
+ * the key alone, a position in the book and one that is not
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookBenchmark {
+    private static final int ENTRIES = 1 << 22;
+
+    private Path file;
+    private PolyglotBook book;
+    private ChessMatch inBook = new ChessMatch();
+    private ChessMatch outOfBook;
+    private int[] moves = new int[Move.MAX_MOVES];
+    private int[] weights = new int[Move.MAX_MOVES];
+    private Random random = new Random(1);
+
+    @Setup
+    public void setup() throws IOException {
+        // random keys, plus the initial position with its legal moves
+        Random keys = new Random(7);
+        long[] entries = new long[ENTRIES];
+        for(int i = 0; i < ENTRIES; i++){
+            entries[i] = keys.nextLong();
+        }
+        int count = inBook.legalMoves(moves);
+        long initial = Polyglot.key(inBook);
+        for(int i = 0; i < count; i++){
+            entries[i] = initial;
+        }
+        // sorted as unsigned numbers
+        for(int i = 0; i < ENTRIES; i++){
+            entries[i] ^= Long.MIN_VALUE;
+        }
+        Arrays.sort(entries);
+
+        file = Files.createTempFile("book", ".bin");
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRIES * 16);
+        int next = 0;
+        for(long entry : entries){
+            long key = entry ^ Long.MIN_VALUE;
+            buffer.putLong(key);
+            buffer.putShort((short)((key == initial) ? Polyglot.encodeMove(moves[next++]) : 0));
+            buffer.putShort((short)(1 + (key & 15)));
+            buffer.putInt(0);
+        }
+        buffer.flip();
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)){
+            while(buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+        }
+        book = PolyglotBook.open(file);
+        outOfBook = ChessMatch.fromFen(Positions.fen(Positions.MIDDLEGAME));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        book = null;
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long key(){
+        return Polyglot.key(inBook);
+    }
+
+    @Benchmark
+    public int probe(){
+        return book.probe(inBook, moves, weights);
+    }
+
+    @Benchmark
+    public int randomMove(){
+        return book.randomMove(inBook, random);
+    }
+
+    @Benchmark
+    public int notInBook(){
+        return book.probe(outOfBook, moves, weights);
+    }
+}
@@ -0,0 +1,116 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.ColorChess;
+import chess.Move;
+import chess.PieceType;
+import chess.Termination;
+
+/**
+ * Public ChessMatch operations: moving, move generation, check and game end detection and the board view
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessMatchBenchmark {
+
+    @Param({Positions.INITIAL, Positions.MIDDLEGAME, Positions.ENDGAME})
+    public String position;
+
+    private ChessMatch start;
+    private ChessMatch chessMatch;
+    private int[] buffer = new int[Move.MAX_MOVES];
+    private int firstMove;
+    private ChessPosition source;
+    private ChessPosition target;
+    private ChessPosition kingPosition;
+    private ColorChess opponent;
+
+    @Setup
+    public void setup(){
+        start = Positions.load(position);
+        chessMatch = start.copy();
+        chessMatch.legalMoves(buffer);
+        firstMove = buffer[0];
+        String move = Move.toString(firstMove);
+        source = Positions.position(move, 0);
+        target = Positions.position(move, 2);
+        for(ChessPiece[] row : chessMatch.getPieces()){
+            for(ChessPiece p : row){
+                if(p != null && p.getType() == PieceType.KING && p.getColor() == chessMatch.getCurrentPlayer()){
+                    kingPosition = p.getChessPosition();
+                }
+            }
+        }
+        opponent = (chessMatch.getCurrentPlayer() == ColorChess.WHITE) ? ColorChess.BLACK : ColorChess.WHITE;
+    }
+
+    /**
+     * performChessMovie can't be undone, so every call gets a fresh copy of the position
+     */
+    @State(Scope.Thread)
+    public static class Fresh {
+        ChessMatch chessMatch;
+
+        @Setup(Level.Invocation)
+        public void setup(ChessMatchBenchmark benchmark){
+            chessMatch = benchmark.start.copy();
+        }
+    }
+
+    // includes the self check rejection, the check and the checkmate tests
+    @Benchmark
+    public ChessPiece performChessMovie(Fresh fresh){
+        return fresh.chessMatch.performChessMovie(source, target);
+    }
+
+    @Benchmark
+    public int legalMoves(){
+        return chessMatch.legalMoves(buffer);
+    }
+
+    @Benchmark
+    public long makeUndoMove(){
+        chessMatch.makeMove(firstMove);
+        long hash = chessMatch.getHash();
+        chessMatch.undoMove();
+        return hash;
+    }
+
+    // run after every move by the App loop and the server: the first legal move ends the search for one
+    @Benchmark
+    public Termination getTermination(){
+        return chessMatch.getTermination();
+    }
+
+    // what testCheck asks: is the king square attacked by the opponent
+    @Benchmark
+    public boolean isKingAttacked(){
+        return chessMatch.isAttacked(kingPosition, opponent);
+    }
+
+    @Benchmark
+    public ChessPiece[][] getPieces(){
+        return chessMatch.getPieces();
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chess.ChessMatch;
+
+/**
+ * Static evaluation at a leaf: the terms kept by the match against summing the whole board again
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+
+    @Param({Positions.INITIAL, Positions.MIDDLEGAME, Positions.ENDGAME})
+    public String position;
+
+    private ChessMatch chessMatch;
+
+    @Setup
+    public void setup(){
+        chessMatch = ChessMatch.fromFen(Positions.fen(position));
+    }
+
+    @Benchmark
+    public int incremental(){
+        return chessMatch.getEvaluation();
+    }
+
+    @Benchmark
+    public int recompute(){
+        return chessMatch.recomputeEvaluation();
+    }
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chess.ChessMatch;
+
+/**
+ * Loading and writing FEN positions, the way the bulk jobs do it (one match reused for every position)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FenBenchmark {
+
+    @Param({Positions.INITIAL, Positions.MIDDLEGAME, Positions.ENDGAME})
+    public String position;
+
+    private String fen;
+    private ChessMatch chessMatch;
+    private StringBuilder sb = new StringBuilder(128);
+
+    @Setup
+    public void setup(){
+        fen = Positions.fen(position);
+        chessMatch = ChessMatch.fromFen(fen);
+    }
+
+    @Benchmark
+    public long loadFen(){
+        chessMatch.loadFen(fen);
+        return chessMatch.getHash();
+    }
+
+    @Benchmark
+    public int appendFen(){
+        sb.setLength(0);
+        chessMatch.appendFen(sb);
+        return sb.length();
+    }
+
+    // a new match for every position, for comparison
+    @Benchmark
+    public ChessMatch fromFen(){
+        return ChessMatch.fromFen(fen);
+    }
+}
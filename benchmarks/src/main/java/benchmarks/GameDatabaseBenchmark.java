@@ -0,0 +1,127 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chess.ChessMatch;
+import chess.Move;
+import gamedb.GameDatabase;
+import gamedb.GameDatabaseWriter;
+
+/**
+ * The game database: adding a game (replay, record and index entries) and the queries, for a position
+ * reached by every game (the initial one), one reached by a single game and loading a game back
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameDatabaseBenchmark {
+    private static final int GAMES = 20000;
+    private static final int PLIES = 80;
+    private static final long INITIAL_HASH = ChessMatch.fromFen(ChessMatch.INITIAL_FEN).getHash();
+
+    private Path directory;
+    private Path scratch;
+    private GameDatabaseWriter scratchWriter;
+    private GameDatabase database;
+    private int[][] games = new int[GAMES][];
+    private int[] counts = new int[GAMES];
+    private long deepHash;
+    private int[] found = new int[GAMES];
+    private ChessMatch chessMatch = new ChessMatch();
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        // random games, the same on every run
+        Random random = new Random(2024);
+        int[] legal = new int[Move.MAX_MOVES];
+        for(int g = 0; g < GAMES; g++){
+            chessMatch.loadFen(ChessMatch.INITIAL_FEN);
+            games[g] = new int[PLIES];
+            while(counts[g] < PLIES){
+                int count = chessMatch.legalMoves(legal);
+                if(count == 0){
+                    break;
+                }
+                int move = legal[random.nextInt(count)];
+                chessMatch.makeMove(move);
+                games[g][counts[g]++] = move;
+            }
+            if(g == 0){
+                deepHash = chessMatch.getHash();
+            }
+        }
+
+        directory = Files.createTempDirectory("gamedb");
+        try(GameDatabaseWriter writer = new GameDatabaseWriter(directory)){
+            for(int g = 0; g < GAMES; g++){
+                writer.add(null, games[g], counts[g], "*");
+            }
+        }
+        database = GameDatabase.open(directory);
+        scratch = Files.createTempDirectory("gamedb");
+        scratchWriter = new GameDatabaseWriter(scratch);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        scratchWriter.close();
+        delete(directory);
+        delete(scratch);
+    }
+
+    private static void delete(Path path) throws IOException {
+        try(Stream<Path> files = Files.walk(path)){
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    // the index entries stay in memory until close, so this is the cost of the game without the final merge
+    @Benchmark
+    public int add() throws IOException {
+        next = (next + 1) % GAMES;
+        return scratchWriter.add(null, games[next], counts[next], "*");
+    }
+
+    @Benchmark
+    public int findInitial(){
+        return database.find(INITIAL_HASH, found);
+    }
+
+    @Benchmark
+    public int countInitial(){
+        return database.count(INITIAL_HASH);
+    }
+
+    @Benchmark
+    public int findDeep(){
+        return database.find(deepHash, found);
+    }
+
+    @Benchmark
+    public int[] loadGame(){
+        next = (next + 1) % GAMES;
+        return database.loadGame(next, chessMatch);
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import chess.ChessMatch;
+import chess.ChessPosition;
+
+/**
+ * Fixed positions for the benchmarks, loaded from FEN
+ */
+public final class Positions {
+    public static final String INITIAL = "initial";
+    public static final String MIDDLEGAME = "middlegame";
+    public static final String ENDGAME = "endgame";
+
+    // Italian game after both sides castled, white to move
+    public static final String MIDDLEGAME_FEN = "r2q1rk1/1pp2ppp/p1npbn2/2b1p3/P1B1P3/2PP1N2/1P1N1PPP/R1BQ1RK1 w - - 1 9";
+
+    // ten pieces left, white to move with one piece of every type
+    public static final String ENDGAME_FEN = "8/1R6/1NQ5/2P5/3P4/6k1/1P2P3/4KB2 w - - 1 26";
+
+    private Positions(){}
+
+    public static ChessMatch load(String name){
+        return ChessMatch.fromFen(fen(name));
+    }
+
+    public static String fen(String name){
+        if(name.equals(INITIAL)){
+            return ChessMatch.INITIAL_FEN;
+        } else if(name.equals(MIDDLEGAME)){
+            return MIDDLEGAME_FEN;
+        } else if(name.equals(ENDGAME)){
+            return ENDGAME_FEN;
+        }
+        throw new IllegalArgumentException("Unknown position: " + name);
+    }
+
+    public static ChessPosition position(String move, int index){
+        return new ChessPosition(move.charAt(index), move.charAt(index + 1) - '0');
+    }
+}
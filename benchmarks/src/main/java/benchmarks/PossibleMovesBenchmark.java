@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Move;
+import chess.PieceType;
+
+/**
+ * Piece.possibleMoves for one piece of each type of the player to move
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PossibleMovesBenchmark {
+
+    @Param({Positions.MIDDLEGAME, Positions.ENDGAME})
+    public String position;
+
+    @Param({"PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING"})
+    public PieceType type;
+
+    private ChessPiece piece;
+    private int[] buffer = new int[Move.MAX_MOVES];
+
+    @Setup
+    public void setup(){
+        ChessMatch chessMatch = Positions.load(position);
+        for(ChessPiece[] row : chessMatch.getPieces()){
+            for(ChessPiece p : row){
+                if(piece == null && p != null && p.getType() == type && p.getColor() == chessMatch.getCurrentPlayer()){
+                    piece = p;
+                }
+            }
+        }
+        if(piece == null){
+            throw new IllegalStateException("No " + type + " to move in the " + position);
+        }
+    }
+
+    @Benchmark
+    public boolean[][] matrix(){
+        return piece.possibleMoves();
+    }
+
+    @Benchmark
+    public long bitboard(){
+        return piece.possibleMovesBitboard();
+    }
+
+    @Benchmark
+    public int packed(){
+        return piece.possibleMoves(buffer, 0);
+    }
+}
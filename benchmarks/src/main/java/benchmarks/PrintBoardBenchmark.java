@@ -0,0 +1,93 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import UI.TerminalRenderer;
+import UI.UI;
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.Move;
+import chess.PieceType;
+
+/**
+ * UI.printBoard rendering, with System.out sent to a stream that drops everything, and the diff
+ * mode of TerminalRenderer redrawing the position before and after one move in turn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrintBoardBenchmark {
+
+    @Param({Positions.MIDDLEGAME, Positions.ENDGAME})
+    public String position;
+
+    private PrintStream console;
+    private ChessPiece[][] pieces;
+    private boolean[][] possibleMoves;
+    private ChessPiece[][] afterMove;
+    private TerminalRenderer diff = new TerminalRenderer(true);
+    private boolean moved;
+
+    @Setup
+    public void setup(){
+        ChessMatch chessMatch = Positions.load(position);
+        pieces = chessMatch.getPieces();
+        // overlay of the moves of the king, which every position has
+        for(ChessPiece[] row : pieces){
+            for(ChessPiece p : row){
+                if(p != null && p.getColor() == chessMatch.getCurrentPlayer() && p.getType() == PieceType.KING){
+                    ChessPosition kingPosition = p.getChessPosition();
+                    possibleMoves = chessMatch.possibleMoves(kingPosition);
+                }
+            }
+        }
+        int[] moves = new int[Move.MAX_MOVES];
+        chessMatch.legalMoves(moves);
+        chessMatch.makeMove(moves[0]);
+        afterMove = chessMatch.getPieces();
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown(){
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public void printBoard(){
+        UI.printBoard(pieces);
+    }
+
+    @Benchmark
+    public void printBoardWithPossibleMoves(){
+        UI.printBoard(pieces, possibleMoves);
+    }
+
+    // only the squares of the move are written, after the first frame
+    @Benchmark
+    public void printBoardDiff(){
+        moved = !moved;
+        diff.board(moved ? afterMove : pieces, null);
+        diff.flush(System.out);
+    }
+}
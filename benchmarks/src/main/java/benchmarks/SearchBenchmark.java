@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import analysis.TranspositionTable;
+import chess.ChessMatch;
+import engine.Search;
+
+/**
+ * Fixed depth searches per second from an empty hash table, the nodes/sec come in the "nodes" counter
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({Positions.INITIAL, Positions.MIDDLEGAME, Positions.ENDGAME})
+    public String position;
+
+    @Param({"6"})
+    public int depth;
+
+    private ChessMatch chessMatch;
+    private TranspositionTable table;
+    private Search search;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup(){
+        chessMatch = Positions.load(position);
+        table = new TranspositionTable(16);
+        search = new Search(chessMatch, table);
+    }
+
+    // every search starts from the same state
+    @Setup(Level.Invocation)
+    public void clearTable(){
+        table.clear();
+    }
+
+    @Benchmark
+    public int search(Nodes counter){
+        int move = search.search(depth);
+        counter.nodes += search.getNodes();
+        return move;
+    }
+}
@@ -0,0 +1,78 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import analysis.TranspositionTable;
+import chess.ChessMatch;
+import engine.SmpSearch;
+
+/**
+ * Lazy SMP time to depth by number of threads: the speedup is the searches/sec of N threads
+ * divided by the searches/sec of 1 thread ("nodes" has the nodes/sec of all the threads)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class SmpSearchBenchmark {
+
+    @Param({Positions.MIDDLEGAME, Positions.INITIAL})
+    public String position;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"7"})
+    public int depth;
+
+    private ChessMatch chessMatch;
+    private TranspositionTable table;
+    private SmpSearch search;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup(){
+        chessMatch = Positions.load(position);
+        table = new TranspositionTable(64);
+        search = new SmpSearch(table, threads);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable(){
+        table.clear();
+    }
+
+    @TearDown
+    public void tearDown(){
+        search.close();
+    }
+
+    @Benchmark
+    public int search(Nodes counter){
+        int move = search.search(chessMatch, depth);
+        counter.nodes += search.getNodes();
+        return move;
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chess.ChessMatch;
+import chess.Move;
+import chess.PositionSnapshot;
+
+/**
+ * Handing a position to another thread: a snapshot against a deep copy of the match,
+ * and a move made on a snapshot (copy-make) or loaded back into a match
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({Positions.INITIAL, Positions.MIDDLEGAME, Positions.ENDGAME})
+    public String position;
+
+    private ChessMatch chessMatch;
+    private ChessMatch target = new ChessMatch();
+    private PositionSnapshot snapshot;
+    private int[] moves = new int[Move.MAX_MOVES];
+    private int count;
+    private int next;
+
+    @Setup
+    public void setup(){
+        chessMatch = ChessMatch.fromFen(Positions.fen(position));
+        snapshot = chessMatch.snapshot();
+        count = chessMatch.legalMoves(moves);
+    }
+
+    @Benchmark
+    public PositionSnapshot snapshot(){
+        return chessMatch.snapshot();
+    }
+
+    @Benchmark
+    public ChessMatch copy(){
+        return chessMatch.copy();
+    }
+
+    @Benchmark
+    public PositionSnapshot play(){
+        next = (next + 1) % count;
+        return snapshot.play(moves[next]);
+    }
+
+    @Benchmark
+    public long loadSnapshot(){
+        target.loadSnapshot(snapshot);
+        return target.getHash();
+    }
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import analysis.StaticExchange;
+import chess.ChessMatch;
+import chess.ColorChess;
+import chess.Move;
+
+/**
+ * Static exchange evaluation of a long capture sequence with x-rays (knight takes a pawn defended
+ * by a knight and a bishop with a queen behind it, a rook and a queen behind it supporting), of every
+ * capture of a middlegame position, and the hanging pieces of one side
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StaticExchangeBenchmark {
+    private ChessMatch exchange = ChessMatch.fromFen("1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3 w - - 0 1");
+    private ChessMatch middlegame = ChessMatch.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+    private int knightTakes;
+    private int[] captures = new int[Move.MAX_MOVES];
+    private int count;
+    private int[] gains = new int[StaticExchange.MAX_CAPTURES];
+
+    @Setup
+    public void setup(){
+        int[] moves = new int[Move.MAX_MOVES];
+        int n = exchange.legalMoves(moves);
+        for(int i = 0; i < n; i++){
+            if(Move.toString(moves[i]).equals("d3e5")){
+                knightTakes = moves[i];
+            }
+        }
+        n = middlegame.legalMoves(moves);
+        for(int i = 0; i < n; i++){
+            if(Move.isCapture(moves[i])){
+                captures[count++] = moves[i];
+            }
+        }
+    }
+
+    @Benchmark
+    public int longExchange(){
+        return StaticExchange.evaluate(exchange, knightTakes, gains);
+    }
+
+    @Benchmark
+    public int allCaptures(){
+        int sum = 0;
+        for(int i = 0; i < count; i++){
+            sum += StaticExchange.evaluate(middlegame, captures[i], gains);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long hangingPieces(){
+        return StaticExchange.hangingPieces(middlegame, ColorChess.BLACK, gains);
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chess.ChessMatch;
+import tablebase.TablebaseGenerator;
+import tablebase.Tablebases;
+
+/**
+ * Endgame tables: probing a ChessMatch, alone and for the best move (one probe per legal move).
+ * Generating them, by number of threads, is in TablebaseGenerationBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TablebaseBenchmark {
+    private Path directory;
+    private Tablebases tablebases;
+    private ChessMatch queen = ChessMatch.fromFen("8/8/8/4k3/8/8/8/KQ6 w - - 0 1");
+    private ChessMatch pawn = ChessMatch.fromFen("8/4p3/8/3K4/8/8/8/4k3 w - - 0 1");
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("tablebases");
+        TablebaseGenerator generator = new TablebaseGenerator(1);
+        generator.generate("KPK", directory);
+        tablebases = generator.getTablebases();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        tablebases = null;
+        try(Stream<Path> files = Files.walk(directory)){
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int probeKQK(){
+        return tablebases.probe(queen);
+    }
+
+    // a black pawn: the table is found with the colors swapped
+    @Benchmark
+    public int probeKPK(){
+        return tablebases.probe(pawn);
+    }
+
+    @Benchmark
+    public int bestMoveKQK(){
+        return tablebases.bestMove(queen);
+    }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tablebase.Tablebase;
+import tablebase.TablebaseGenerator;
+
+/**
+ * Time to generate one endgame table by number of threads: the speedup is the time of 1 thread
+ * divided by the time of N threads. The smaller tables it captures into are made once in the
+ * setup, so only the table itself is generated each time (KBNK takes seconds per thread count).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TablebaseGenerationBenchmark {
+
+    @Param({"KQK", "KRK", "KPK", "KBNK"})
+    public String material;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private Path directory;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("tablebases");
+        new TablebaseGenerator(threads).generate(material, directory);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try(Stream<Path> files = Files.walk(directory)){
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Tablebase generate() throws IOException {
+        return new TablebaseGenerator(threads).generate(material, directory);
+    }
+}
@@ -1,34 +1,81 @@
-import java.util.ArrayList;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.InputMismatchException;
-import java.util.List;
 import java.util.Scanner;
 
 import UI.UI;
+import book.PolyglotBook;
 import chess.ChessException;
 import chess.ChessMatch;
-import chess.ChessPiece;
 import chess.ChessPosition;
+import chess.Move;
+import chess.Termination;
+import engine.Uci;
+import pgn.San;
+import server.GameServer;
 
 public class App {
     public static void main(String[] args) throws Exception {
 
+        // "server [port]" hosts games over TCP instead of playing one here
+        if(args.length > 0 && args[0].equals("server")){
+            GameServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // "uci" talks to a chess GUI on the standard input and output
+        if(args.length > 0 && args[0].equals("uci")){
+            Uci.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // "book <file.bin>" shows the moves of a Polyglot opening book under the board
+        PolyglotBook book = null;
+        if(args.length > 1 && args[0].equals("book")){
+            book = PolyglotBook.open(Paths.get(args[1]));
+        }
+
+        // "diff" (also after the book) keeps the board in place and redraws only the squares that changed
+        if(Arrays.asList(args).contains("diff")){
+            UI.setDiffMode(true);
+        }
+
         /**
          * Scanner and Lists
          */
         Scanner sc = new Scanner(System.in);
         ChessMatch chessMatch = new ChessMatch();
-        List<ChessPiece> capturedPieces = new ArrayList<>();
+        int[] bookMoves = new int[Move.MAX_MOVES];
+        int[] bookWeights = new int[Move.MAX_MOVES];
 
-        // The Game keep going if the variable check mate is false
-        while(!chessMatch.getCheckMate()){
+        // The Game keep going until a checkmate or a draw
+        while(chessMatch.getTermination() == Termination.NONE){
             try{
                 UI.clearScreen();
-                UI.printMatch(chessMatch, capturedPieces);
+                UI.printMatch(chessMatch, chessMatch.getCapturedPieces());
                 System.out.println();
+                if(book != null){
+                    int n = book.probe(chessMatch, bookMoves, bookWeights);
+                    if(n > 0){
+                        System.out.print("Book:");
+                        for(int i = 0; i < n; i++){
+                            System.out.print(" " + San.toString(chessMatch, bookMoves[i]) + " (" + bookWeights[i] + ")");
+                        }
+                        System.out.println();
+                    }
+                }
 
-                // Source Position (from)
-                System.out.print("Source: ");
-                ChessPosition source = UI.readChessPosition(sc);
+                // Source Position (from), or "undo" to take back the last move
+                System.out.print("Source (or undo): ");
+                String input = sc.nextLine().trim();
+                if(input.equalsIgnoreCase("undo")){
+                    if(chessMatch.getPly() == 0){
+                        throw new ChessException("There Is No Move To Undo");
+                    }
+                    chessMatch.takeback(1);
+                    continue;
+                }
+                ChessPosition source = UI.parseChessPosition(input);
 
                 boolean[][] possibleMoves = chessMatch.possibleMoves(source);
                 UI.clearScreen();
@@ -40,11 +87,7 @@ public class App {
                 System.out.print("Target: ");
                 ChessPosition target = UI.readChessPosition(sc);
     
-                ChessPiece capturedPiece = chessMatch.performChessMovie(source, target);
-
-                if(capturedPiece != null){
-                    capturedPieces.add(capturedPiece);
-                }
+                chessMatch.performChessMovie(source, target);
 
                 // Checking if the pawn get on the last row and promoting it
                 if(chessMatch.getPromoted() != null){
@@ -66,6 +109,6 @@ public class App {
             }
         }
         UI.clearScreen();
-        UI.printMatch(chessMatch, capturedPieces); 
+        UI.printMatch(chessMatch, chessMatch.getCapturedPieces()); 
     }
 }
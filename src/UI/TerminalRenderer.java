@@ -0,0 +1,224 @@
+package UI;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import chess.ChessPiece;
+import chess.ColorChess;
+
+/**
+ * Builds a whole frame (board, captured pieces, status lines) in one reusable UTF-8 byte buffer,
+ * written with a single write and flush instead of one print per square.
+ *
+ * In diff mode the board stays at the top of the screen: the first frame clears the screen, the
+ * next ones move the cursor only to the squares that changed since the last frame (piece or
+ * possible-move highlight), redraw them and clear the lines below the board for the rest of the frame.
+ */
+public class TerminalRenderer {
+    private static final String CLEAR_SCREEN = "\033[H\033[2J";
+    private static final String CLEAR_BELOW = "\033[J";
+    // the board, an empty line, the column letters and an empty line
+    private static final int BOARD_LINES = 11;
+    // "8    " before the first square, and 3 columns per square
+    private static final int FIRST_COLUMN = 6;
+
+    private final boolean diff;
+    private byte[] buffer = new byte[4096];
+    private int length;
+
+    // what each square showed in the last frame: kind + 1 (0 empty), + 16 when highlighted; -1 unknown
+    private final int[] shown = new int[64];
+    private final byte[][] symbols = new byte[12][];
+
+    public TerminalRenderer(boolean diff){
+        this.diff = diff;
+        invalidate();
+    }
+
+    public boolean isDiff(){
+        return diff;
+    }
+
+    // the next board is drawn whole (the screen was cleared or scrolled by something else)
+    public void invalidate(){
+        Arrays.fill(shown, -1);
+    }
+
+    // bytes of the frame so far
+    public int size(){
+        return length;
+    }
+
+    public TerminalRenderer append(String s){
+        for(int i = 0; i < s.length(); i++){
+            char c = s.charAt(i);
+            if(c < 0x80){
+                put(c);
+            } else if(c < 0x800){
+                put(0xC0 | (c >> 6));
+                put(0x80 | (c & 0x3F));
+            } else if(Character.isHighSurrogate(c) && i + 1 < s.length()){
+                int code = Character.toCodePoint(c, s.charAt(++i));
+                put(0xF0 | (code >> 18));
+                put(0x80 | ((code >> 12) & 0x3F));
+                put(0x80 | ((code >> 6) & 0x3F));
+                put(0x80 | (code & 0x3F));
+            } else{
+                put(0xE0 | (c >> 12));
+                put(0x80 | ((c >> 6) & 0x3F));
+                put(0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    public TerminalRenderer append(int n){
+        // as a long, so -Integer.MIN_VALUE doesn't overflow
+        long value = n;
+        if(value < 0){
+            put('-');
+            value = -value;
+        }
+        appendDigits(value);
+        return this;
+    }
+
+    private void appendDigits(long value){
+        if(value >= 10){
+            appendDigits(value / 10);
+        }
+        put((int)('0' + value % 10));
+    }
+
+    public TerminalRenderer newLine(){
+        put('\n');
+        return this;
+    }
+
+    private void put(int b){
+        if(length == buffer.length){
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[length++] = (byte)b;
+    }
+
+    private void put(byte[] bytes){
+        if(length + bytes.length > buffer.length){
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + bytes.length));
+        }
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * Clears the screen at the start of the frame (not needed in diff mode, where the first board does it)
+     */
+    public void clearScreen(){
+        if(!diff){
+            append(CLEAR_SCREEN).newLine();
+        }
+    }
+
+    /**
+     * Adds the board to the frame, whole or (diff mode) only the squares that changed
+     * @param possibleMoves squares to highlight, null for none
+     */
+    public void board(ChessPiece[][] pieces, boolean[][] possibleMoves){
+        if(!diff){
+            fullBoard(pieces, possibleMoves);
+            return;
+        }
+        if(shown[0] < 0){
+            append(CLEAR_SCREEN);
+            fullBoard(pieces, possibleMoves);
+            for(int i = 0; i < 8; i++){
+                for(int j = 0; j < 8; j++){
+                    shown[i * 8 + j] = state(pieces[i][j], possibleMoves != null && possibleMoves[i][j]);
+                }
+            }
+            return;
+        }
+        for(int i = 0; i < 8; i++){
+            for(int j = 0; j < 8; j++){
+                boolean highlight = possibleMoves != null && possibleMoves[i][j];
+                int state = state(pieces[i][j], highlight);
+                if(state != shown[i * 8 + j]){
+                    // the cursor goes to line i + 1, column of the square (both start at 1)
+                    append("\033[").append(i + 1).append(";").append(FIRST_COLUMN + 3 * j).append("H");
+                    square(pieces[i][j], i, j, highlight);
+                    shown[i * 8 + j] = state;
+                }
+            }
+        }
+        // the rest of the frame goes below the board, over what was there
+        append("\033[").append(BOARD_LINES + 1).append(";1H").append(CLEAR_BELOW);
+    }
+
+    private static int state(ChessPiece piece, boolean highlight){
+        return ((piece == null) ? 0 : piece.getKind() + 1) | (highlight ? 16 : 0);
+    }
+
+    private void fullBoard(ChessPiece[][] pieces, boolean[][] possibleMoves){
+        for(int i = 0; i < pieces.length; i++){
+            append(8 - i).append("    ");
+            for(int j = 0; j < pieces.length; j++){
+                square(pieces[i][j], i, j, possibleMoves != null && possibleMoves[i][j]);
+            }
+            newLine();
+        }
+        newLine();
+        append("      A  B  C  D  E  F  G  H").newLine();
+        newLine();
+    }
+
+    // background of the square (dark when row + column is odd), the highlight, then the piece in its color
+    private void square(ChessPiece piece, int i, int j, boolean highlight){
+        append(((i + j) % 2 == 1) ? UI.ANSI_BLACK_BACKGROUND : UI.ANSI_RESET);
+        if(highlight){
+            append(UI.ANSI_BLUE_BACKGROUND);
+        }
+        if(piece == null){
+            append("   ");
+        } else{
+            append((piece.getColor() == ColorChess.WHITE) ? UI.ANSI_WHITE : UI.ANSI_YELLOW).append(" ");
+            put(symbol(piece));
+            append(" ");
+        }
+        append(UI.ANSI_RESET);
+    }
+
+    // the UTF-8 bytes of the piece letter, encoded once per kind
+    private byte[] symbol(ChessPiece piece){
+        byte[] symbol = symbols[piece.getKind()];
+        if(symbol == null){
+            int start = length;
+            append(piece.toString());
+            symbol = Arrays.copyOfRange(buffer, start, length);
+            length = start;
+            symbols[piece.getKind()] = symbol;
+        }
+        return symbol;
+    }
+
+    // like Arrays.toString of the list, the letters of the pieces between [ ] and separated by ", "
+    public void pieces(List<ChessPiece> pieces){
+        append("[");
+        for(int i = 0; i < pieces.size(); i++){
+            if(i > 0){
+                append(", ");
+            }
+            put(symbol(pieces.get(i)));
+        }
+        append("]");
+    }
+
+    /**
+     * Writes the frame with one write and one flush, and empties the buffer for the next one
+     */
+    public void flush(PrintStream out){
+        out.write(buffer, 0, length);
+        out.flush();
+        length = 0;
+    }
+}
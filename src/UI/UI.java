@@ -1,8 +1,5 @@
 package UI;
 
-import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
-import java.util.Arrays;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Scanner;
@@ -12,6 +9,7 @@ import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.ChessPosition;
 import chess.ColorChess;
+import chess.Termination;
 
 public class UI{
 
@@ -35,10 +33,21 @@ public class UI{
 	public static final String ANSI_CYAN_BACKGROUND = "\u001B[46m";
 	public static final String ANSI_WHITE_BACKGROUND = "\u001B[47m";
 
-    // Method to clean the screen everytime that one move is maked
+    // Every frame is built here and written at once; replaced by setDiffMode
+    private static TerminalRenderer renderer = new TerminalRenderer(false);
+
+    /**
+     * In diff mode the board is drawn once and then only the squares that changed are redrawn,
+     * moving the cursor to them, instead of clearing the screen before each frame
+     * @param diff
+     */
+    public static void setDiffMode(boolean diff){
+        renderer = new TerminalRenderer(diff);
+    }
+
+    // Method to clean the screen everytime that one move is maked (written with the next board)
     public static void clearScreen(){
-        System.out.println("\033[H\033[2J");
-        System.out.flush();
+        renderer.clearScreen();
     }
 
     /**
@@ -47,9 +56,17 @@ public class UI{
      * @return ChessPosition
      */
     public static ChessPosition readChessPosition(Scanner sc){
+        // Reading the Chess Position Provide By The User
+        return parseChessPosition(sc.nextLine());
+    }
+
+    /**
+     * 
+     * @param s one position typed by the user, like "e2"
+     * @return ChessPosition
+     */
+    public static ChessPosition parseChessPosition(String s){
         try{
-            // Reading the Chess Position Provide By The User
-            String s = sc.nextLine();
             char column = s.charAt(0);
             int row = Integer.parseInt(s.substring(1));
             return new ChessPosition(column, row);
@@ -66,34 +83,42 @@ public class UI{
      * @method Generate the Game
      */
     public static void printMatch(ChessMatch chessMatch, List<ChessPiece> capturedPieces){
-        // Printing the board
-        printBoard(chessMatch.getPieces());
-        System.out.println();
+        // Adding the board
+        renderer.board(chessMatch.getPieces(), null);
+        renderer.newLine();
 
-        // Printing the captured pieces (black and white)
+        // Adding the captured pieces (black and white)
         printCapturedPieces(capturedPieces);
-        System.out.println();
+        renderer.newLine();
 
         // Showing who has to play next
-        System.out.println("Turn: " + chessMatch.getTurn());
+        renderer.append("Turn: ").append(chessMatch.getTurn()).newLine();
 
         /**
-         * Conditional to Check the "Check" and "CheckMate"
+         * Conditional to Check the "Check", "CheckMate" and the draws
          */
-        if(!chessMatch.getCheckMate()){
-            System.out.println("Player Turn: " + chessMatch.getCurrentPlayer());
+        Termination termination = chessMatch.getTermination();
+        if(termination.isDraw()){
+            renderer.append(ANSI_RED).newLine();
+            renderer.append("DRAW! (" + termination + ")").newLine();
+            renderer.append(ANSI_RESET);
+        } else if(!chessMatch.getCheckMate()){
+            renderer.append("Player Turn: " + chessMatch.getCurrentPlayer()).newLine();
             // if the check variable is true, then print "check"
             if(chessMatch.getCheck()){
-                System.out.println(ANSI_RED);
-                System.out.println("CHECK!");
-                System.out.print(ANSI_RESET);
+                renderer.append(ANSI_RED).newLine();
+                renderer.append("CHECK!").newLine();
+                renderer.append(ANSI_RESET);
             }
         } else{
-            System.out.println(ANSI_RED);
-            System.out.println("CHECKMATE!");
-            System.out.print(ANSI_RESET);
-            System.out.println("Winner: " + chessMatch.getCurrentPlayer());
+            renderer.append(ANSI_RED).newLine();
+            renderer.append("CHECKMATE!").newLine();
+            renderer.append(ANSI_RESET);
+            renderer.append("Winner: " + chessMatch.getCurrentPlayer()).newLine();
         }
+
+        // The whole frame in one write
+        renderer.flush(System.out);
     }
 
     /**
@@ -101,146 +126,33 @@ public class UI{
      * @param pieces Matrix
      */
     public static void printBoard(ChessPiece[][] pieces){
-        // Printing the board
-        for(int i = 0; i < pieces.length; i++){
-            System.out.print((8 - i) + "    ");
-            for(int j = 0; j < pieces.length; j++){
-                
-                // Adding the background stardand or black on the page and printing the piece on the cl
-                if(i % 2 == 1){
-                    if(j % 2 == 1){
-                        System.out.print(ANSI_RESET);
-                        printPiece(pieces[i][j], false);
-                        System.out.print(ANSI_RESET);
-                    } else if(j % 2 == 0){
-                        System.out.print(ANSI_BLACK_BACKGROUND);
-                        printPiece(pieces[i][j], false);
-                        System.out.print(ANSI_RESET);
-                    }
-                } else if(i % 2 == 0){
-                    if(j % 2 == 1){
-                        System.out.print(ANSI_BLACK_BACKGROUND);
-                        printPiece(pieces[i][j], false);
-                        System.out.print(ANSI_RESET);
-                    } else if(j % 2 == 0){
-                        System.out.print(ANSI_RESET);
-                        printPiece(pieces[i][j], false);
-                        System.out.print(ANSI_RESET);
-                    }
-                } else{
-                    System.out.print(ANSI_RESET);
-                    printPiece(pieces[i][j], false);
-                    System.out.print(ANSI_RESET);
-                }
-            }
-            System.out.println();
-        }
-
-        System.out.println();
-        System.out.println("      A  B  C  D  E  F  G  H");
-        System.out.println();
+        renderer.board(pieces, null);
+        renderer.flush(System.out);
     }
 
 // Printing the board with the possible moves (After the user select one piece)
     public static void printBoard(ChessPiece[][] pieces, boolean[][] possibleMoves){
-        for(int i = 0; i < pieces.length; i++){
-            // Adding the background stardand or black on the page, printing the piece on the cl and the possible moves
-            System.out.print((8 - i) + "    ");
-            for(int j = 0; j < pieces.length; j++){
-                if(i % 2 == 1){
-                    if(j % 2 == 1){
-                        System.out.print(ANSI_RESET);
-                        printPiece(pieces[i][j], possibleMoves[i][j]);
-                        System.out.print(ANSI_RESET);
-                    } else if(j % 2 == 0){
-                        System.out.print(ANSI_BLACK_BACKGROUND);
-                        printPiece(pieces[i][j], possibleMoves[i][j]);
-                        System.out.print(ANSI_RESET);
-                    }
-                } else if(i % 2 == 0){
-                    if(j % 2 == 1){
-                        System.out.print(ANSI_BLACK_BACKGROUND);
-                        printPiece(pieces[i][j], possibleMoves[i][j]);
-                        System.out.print(ANSI_RESET);
-                    } else if(j % 2 == 0){
-                        System.out.print(ANSI_RESET);
-                        printPiece(pieces[i][j], possibleMoves[i][j]);
-                        System.out.print(ANSI_RESET);
-                    }
-                } else{
-                    System.out.print(ANSI_RESET);
-                    printPiece(pieces[i][j], possibleMoves[i][j]);
-                    System.out.print(ANSI_RESET);
-                }
-            }
-            System.out.println();
-        }
-        System.out.println();
-        System.out.println("      A  B  C  D  E  F  G  H");
-        System.out.println();
+        renderer.board(pieces, possibleMoves);
+        renderer.flush(System.out);
     }
 
     /**
-     * Printing Each Piece
-     * @param piece
-     * @param background
-     */
-    private static void printPiece(ChessPiece piece, boolean background){
-        if(background){
-            System.out.print(ANSI_BLUE_BACKGROUND);
-        }
-        if(piece == null){
-            System.out.print("   " + ANSI_RESET);
-        } else{
-            if (piece.getColor() == ColorChess.WHITE) {
-                // https://stackoverflow.com/questions/48402025/unicode-output-java-windows-cmd
-                try{
-                    PrintStream outStream = new PrintStream(System.out, true, "UTF-8");
-                    outStream.print(ANSI_WHITE + " " + piece + " " + ANSI_RESET);
-                }catch(UnsupportedEncodingException e){
-                    System.out.println("Caught exception: " + e.getMessage());
-                }
-            }
-            else {
-                try{
-                    PrintStream outStream = new PrintStream(System.out, true, "UTF-8");
-                    outStream.print(ANSI_YELLOW + " " + piece + " " + ANSI_RESET);
-                }catch(UnsupportedEncodingException e){
-                    System.out.println("Caught exception: " + e.getMessage());
-                }
-            }
-        }
-    }
-    
-    /**
-     * Printing the Captured Pieces
+     * Adding the Captured Pieces to the frame
      * @param piecesCaptured
      */
     private static void printCapturedPieces(List<ChessPiece> piecesCaptured){
         // Putting in two different lists the pieces white and black that had been captured.
         List<ChessPiece> white = piecesCaptured.stream().filter(x -> x.getColor() == ColorChess.WHITE).collect(Collectors.toList());
         List<ChessPiece> black = piecesCaptured.stream().filter(x -> x.getColor() == ColorChess.BLACK).collect(Collectors.toList());
-        System.out.println("Captured Pieces: ");
+        renderer.append("Captured Pieces: ").newLine();
 
-        // Printing the pieces
-        try{
-            PrintStream outStream = new PrintStream(System.out, true, "UTF-8");
-            outStream.print("White: ");
-            outStream.print(ANSI_WHITE);
-            outStream.print(Arrays.toString(white.toArray()));
-            System.out.println(ANSI_RESET);
-        }catch(UnsupportedEncodingException e){
-            System.out.println("Caught exception: " + e.getMessage());
-        }
+        // Adding the pieces
+        renderer.append("White: ").append(ANSI_WHITE);
+        renderer.pieces(white);
+        renderer.append(ANSI_RESET).newLine();
 
-        try{
-            PrintStream outStream = new PrintStream(System.out, true, "UTF-8");
-            outStream.print("Black: ");
-            outStream.print(ANSI_YELLOW);
-            outStream.print(Arrays.toString(black.toArray()));
-            System.out.println(ANSI_RESET);
-        }catch(UnsupportedEncodingException e){
-            System.out.println("Caught exception: " + e.getMessage());
-        }
+        renderer.append("Black: ").append(ANSI_YELLOW);
+        renderer.pieces(black);
+        renderer.append(ANSI_RESET).newLine();
     }
 }
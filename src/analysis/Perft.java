@@ -0,0 +1,191 @@
+package analysis;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import chess.ChessMatch;
+import chess.Move;
+
+/**
+ * Counts the leaf nodes of the legal move tree (perft), using only ChessMatch.legalMoves,
+ * makeMove and undoMove. The counts of the reference positions are known, so any
+ * difference points to a bug in the move rules, and the time gives the generator speed.
+ */
+public class Perft {
+    private ChessMatch chessMatch;
+    private int[][] moves;
+
+    public Perft(ChessMatch chessMatch){
+        this.chessMatch = chessMatch;
+        this.moves = new int[1][Move.MAX_MOVES];
+    }
+
+    public long perft(int depth){
+        if(depth < 1){
+            return 1;
+        }
+        if(moves.length < depth){
+            moves = new int[depth][Move.MAX_MOVES];
+        }
+        return count(depth);
+    }
+
+    private long count(int depth){
+        int[] buffer = moves[depth - 1];
+        int n = chessMatch.legalMoves(buffer);
+        // the last level only needs the number of moves
+        if(depth == 1){
+            return n;
+        }
+        long nodes = 0;
+        for(int i = 0; i < n; i++){
+            chessMatch.makeMove(buffer[i]);
+            nodes += count(depth - 1);
+            chessMatch.undoMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Perft of every root move, printed one per line like "e2e4: 20"
+     * @return total of nodes
+     */
+    public long divide(int depth, PrintStream out){
+        int[] root = new int[Move.MAX_MOVES];
+        int n = chessMatch.legalMoves(root);
+        long total = 0;
+        for(int i = 0; i < n; i++){
+            chessMatch.makeMove(root[i]);
+            long nodes = perft(depth - 1);
+            chessMatch.undoMove();
+            out.println(Move.toString(root[i]) + ": " + nodes);
+            total += nodes;
+        }
+        out.println();
+        out.println("Moves: " + n);
+        out.println("Nodes: " + total);
+        return total;
+    }
+
+    /**
+     * Splits the root moves across the pool; every task works on its own copy of the position
+     */
+    public static long parallelPerft(ChessMatch chessMatch, int depth, ForkJoinPool pool){
+        if(depth < 2){
+            return new Perft(chessMatch).perft(depth);
+        }
+        return pool.invoke(new RootTask(chessMatch, depth));
+    }
+
+    private static class RootTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private transient ChessMatch chessMatch;
+        private int depth;
+
+        RootTask(ChessMatch chessMatch, int depth){
+            this.chessMatch = chessMatch;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute(){
+            int[] root = new int[Move.MAX_MOVES];
+            int n = chessMatch.legalMoves(root);
+            List<MoveTask> tasks = new ArrayList<>();
+            for(int i = 0; i < n; i++){
+                tasks.add(new MoveTask(chessMatch.copy(), root[i], depth - 1));
+            }
+            long nodes = 0;
+            for(MoveTask task : invokeAll(tasks)){
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+
+    private static class MoveTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private transient ChessMatch chessMatch;
+        private int move;
+        private int depth;
+
+        MoveTask(ChessMatch chessMatch, int move, int depth){
+            this.chessMatch = chessMatch;
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute(){
+            chessMatch.makeMove(move);
+            return new Perft(chessMatch).perft(depth);
+        }
+    }
+
+    /**
+     * Reference positions (FEN) and their node counts by depth (index 0 = depth 1)
+     */
+    private static final String[] REFERENCE_NAMES = {
+        "Initial position", "Kiwipete", "Position 3", "Position 4", "Position 5", "Position 6"
+    };
+
+    private static final String[] REFERENCE_FENS = {
+        ChessMatch.INITIAL_FEN,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    };
+
+    private static final long[][] REFERENCE_NODES = {
+        {20L, 400L, 8902L, 197281L, 4865609L, 119060324L},
+        {48L, 2039L, 97862L, 4085603L, 193690690L},
+        {14L, 191L, 2812L, 43238L, 674624L, 11030083L},
+        {6L, 264L, 9467L, 422333L, 15833292L},
+        {44L, 1486L, 62379L, 2103487L, 89941194L},
+        {46L, 2079L, 89890L, 3894594L, 164075551L}
+    };
+
+    private static ChessMatch referencePosition(int index){
+        return ChessMatch.fromFen(REFERENCE_FENS[index]);
+    }
+
+    /**
+     * Checks the reference positions and reports nodes/sec
+     * @param args [max depth] [parallel]
+     */
+    public static void main(String[] args){
+        int maxDepth = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+        boolean parallel = args.length > 1 && args[1].equalsIgnoreCase("parallel");
+        ForkJoinPool pool = parallel ? new ForkJoinPool() : null;
+        boolean allPassed = true;
+
+        for(int i = 0; i < REFERENCE_NAMES.length; i++){
+            System.out.println(REFERENCE_NAMES[i]);
+            for(int depth = 1; depth <= Math.min(maxDepth, REFERENCE_NODES[i].length); depth++){
+                ChessMatch chessMatch = referencePosition(i);
+                long start = System.nanoTime();
+                long nodes = parallel ? parallelPerft(chessMatch, depth, pool) : new Perft(chessMatch).perft(depth);
+                long elapsed = Math.max(1, System.nanoTime() - start);
+                boolean passed = nodes == REFERENCE_NODES[i][depth - 1];
+                allPassed &= passed;
+                System.out.printf("  depth %d: %,d nodes (%s) %.3f s, %,d nodes/sec%n",
+                    depth, nodes, passed ? "OK" : "expected " + REFERENCE_NODES[i][depth - 1],
+                    elapsed / 1e9, nodes * 1_000_000_000L / elapsed);
+            }
+        }
+        if(pool != null){
+            pool.shutdown();
+        }
+        System.out.println(allPassed ? "All perft counts match" : "PERFT MISMATCH");
+        if(!allPassed){
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package analysis;
+
+import chess.Bitboards;
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.ColorChess;
+import chess.Move;
+import chess.PieceType;
+
+/**
+ * Static exchange evaluation: the material won by a capture when both players go on capturing on
+ * the same square, each with its least valuable piece, and stop as soon as it stops paying.
+ *
+ * The attackers come from the bitboards of the match (no move is made), and when a piece leaves
+ * the square a bishop, rook or queen behind it on the same line joins in (x-ray). Pins and checks
+ * are not looked at, and a pawn that captures on the last row stays a pawn for the next captures.
+ * Each method has a version that takes the scratch array of the exchange (MAX_CAPTURES long), so a
+ * search can keep one and not allocate; the others create it.
+ */
+public class StaticExchange {
+    // the usual exchange values in centipawns, bishop and knight alike (a king can't be taken, so it only captures last)
+    private static final int[] VALUES = {100, 325, 325, 500, 900, 20000};
+    private static final PieceType[] TYPES = PieceType.values();
+    private static final ColorChess[] COLORS = ColorChess.values();
+    // captures an exchange can have, the length of the scratch array
+    public static final int MAX_CAPTURES = 32;
+
+    private StaticExchange(){}
+
+    public static int value(PieceType type){
+        return VALUES[type.ordinal()];
+    }
+
+    /**
+     * @return material won (or lost, when negative) by the move and the exchange that follows on
+     * its target square, in centipawns; 0 for a quiet move that can't be taken
+     */
+    public static int evaluate(ChessMatch chessMatch, int move){
+        return evaluate(chessMatch, move, new int[MAX_CAPTURES]);
+    }
+
+    public static int evaluate(ChessMatch chessMatch, int move, int[] gains){
+        int from = Move.from(move);
+        int to = Move.to(move);
+        ChessPiece piece = chessMatch.getPiece(from);
+        long occupied = chessMatch.getOccupied() ^ Bitboards.bit(from);
+        int gain = 0;
+        if((Move.flags(move) & Move.EN_PASSANT) != 0){
+            // the pawn taken is beside the target square
+            int captured = (from & ~7) | (to & 7);
+            occupied ^= Bitboards.bit(captured);
+            gain = VALUES[PieceType.PAWN.ordinal()];
+        } else if(chessMatch.getPiece(to) != null){
+            gain = VALUES[chessMatch.getPiece(to).getType().ordinal()];
+        }
+        int onSquare = VALUES[piece.getType().ordinal()];
+        if(Move.promotion(move) != 0){
+            onSquare = VALUES[Move.promotion(move)];
+            gain += onSquare - VALUES[PieceType.PAWN.ordinal()];
+        }
+        return exchange(chessMatch, to, opponent(piece.getColor()), occupied, gain, onSquare, gains);
+    }
+
+    /**
+     * @return true if the move doesn't lose material: same as evaluate(move) >= 0, without the
+     * exchange when the piece taken is worth at least the one taking it
+     */
+    public static boolean isSafe(ChessMatch chessMatch, int move){
+        return isSafe(chessMatch, move, new int[MAX_CAPTURES]);
+    }
+
+    public static boolean isSafe(ChessMatch chessMatch, int move, int[] gains){
+        if(Move.isCapture(move) && Move.promotion(move) == 0){
+            ChessPiece victim = chessMatch.getPiece(Move.to(move));
+            int victimValue = (victim == null) ? VALUES[PieceType.PAWN.ordinal()] : VALUES[victim.getType().ordinal()];
+            if(victimValue >= VALUES[chessMatch.getPiece(Move.from(move)).getType().ordinal()]){
+                return true;
+            }
+        }
+        return evaluate(chessMatch, move, gains) >= 0;
+    }
+
+    /**
+     * @return material the opponent of the piece on the square wins by taking it first with its
+     * least valuable attacker (0 when the square is empty, not attacked or taking doesn't pay)
+     */
+    public static int threat(ChessMatch chessMatch, int square){
+        return threat(chessMatch, square, new int[MAX_CAPTURES]);
+    }
+
+    public static int threat(ChessMatch chessMatch, int square, int[] gains){
+        ChessPiece piece = chessMatch.getPiece(square);
+        if(piece == null){
+            return 0;
+        }
+        ColorChess attacker = opponent(piece.getColor());
+        long occupied = chessMatch.getOccupied();
+        long attackers = attackers(chessMatch, square, occupied) & colorPieces(chessMatch, attacker);
+        if(attackers == 0){
+            return 0;
+        }
+        int first = leastValuable(chessMatch, attackers, attacker);
+        int firstSquare = Long.numberOfTrailingZeros(attackers & chessMatch.getBitboard(attacker, TYPES[first]));
+        int gain = VALUES[piece.getType().ordinal()];
+        int value = exchange(chessMatch, square, piece.getColor(), occupied ^ Bitboards.bit(firstSquare), gain, VALUES[first], gains);
+        return Math.max(0, value);
+    }
+
+    // a piece is hanging when the opponent wins material by taking it
+    public static boolean isHanging(ChessMatch chessMatch, int square){
+        return isHanging(chessMatch, square, new int[MAX_CAPTURES]);
+    }
+
+    public static boolean isHanging(ChessMatch chessMatch, int square, int[] gains){
+        return threat(chessMatch, square, gains) > 0;
+    }
+
+    /**
+     * @return the pieces of the color that are hanging, one bit per square
+     */
+    public static long hangingPieces(ChessMatch chessMatch, ColorChess color){
+        return hangingPieces(chessMatch, color, new int[MAX_CAPTURES]);
+    }
+
+    public static long hangingPieces(ChessMatch chessMatch, ColorChess color, int[] gains){
+        long hanging = 0;
+        for(long pieces = colorPieces(chessMatch, color); pieces != 0; pieces &= pieces - 1){
+            int square = Long.numberOfTrailingZeros(pieces);
+            if(isHanging(chessMatch, square, gains)){
+                hanging |= Bitboards.bit(square);
+            }
+        }
+        return hanging;
+    }
+
+    /**
+     * The captures after the first one: gain is what the first capture won, onSquare the value of
+     * the piece now on the square and side the player who may take it back; gains is the scratch array
+     */
+    private static int exchange(ChessMatch chessMatch, int square, ColorChess side, long occupied, int gain, int onSquare, int[] gains){
+        gains[0] = gain;
+        int depth = 0;
+        long attackers = attackers(chessMatch, square, occupied) & occupied;
+        long white = colorPieces(chessMatch, ColorChess.WHITE);
+        long diagonal = chessMatch.getBitboard(ColorChess.WHITE, PieceType.BISHOP) | chessMatch.getBitboard(ColorChess.BLACK, PieceType.BISHOP)
+            | chessMatch.getBitboard(ColorChess.WHITE, PieceType.QUEEN) | chessMatch.getBitboard(ColorChess.BLACK, PieceType.QUEEN);
+        long straight = chessMatch.getBitboard(ColorChess.WHITE, PieceType.ROOK) | chessMatch.getBitboard(ColorChess.BLACK, PieceType.ROOK)
+            | chessMatch.getBitboard(ColorChess.WHITE, PieceType.QUEEN) | chessMatch.getBitboard(ColorChess.BLACK, PieceType.QUEEN);
+        while(depth + 1 < MAX_CAPTURES){
+            long own = attackers & ((side == ColorChess.WHITE) ? white : ~white);
+            if(own == 0){
+                break;
+            }
+            int type = leastValuable(chessMatch, own, side);
+            // the king only takes when nothing can take it back
+            if(TYPES[type] == PieceType.KING && (attackers & ~own) != 0){
+                break;
+            }
+            depth++;
+            gains[depth] = onSquare - gains[depth - 1];
+            // taking loses for this side whatever comes next, and the result before it can't change any more
+            if(Math.max(-gains[depth - 1], gains[depth]) < 0){
+                depth--;
+                break;
+            }
+            onSquare = VALUES[type];
+            occupied ^= Long.lowestOneBit(own & chessMatch.getBitboard(side, TYPES[type]));
+            // sliders behind the piece that moved
+            attackers |= (Bitboards.bishopAttacks(square, occupied) & diagonal) | (Bitboards.rookAttacks(square, occupied) & straight);
+            attackers &= occupied;
+            side = opponent(side);
+        }
+        // each player takes only when it is better than stopping
+        while(depth > 0){
+            gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+            depth--;
+        }
+        return gains[0];
+    }
+
+    // pieces of both colors attacking the square
+    private static long attackers(ChessMatch chessMatch, int square, long occupied){
+        long attackers = 0;
+        for(ColorChess color : COLORS){
+            long queens = chessMatch.getBitboard(color, PieceType.QUEEN);
+            attackers |= (Bitboards.pawnAttacks(opponent(color), square) & chessMatch.getBitboard(color, PieceType.PAWN))
+                | (Bitboards.knightAttacks(square) & chessMatch.getBitboard(color, PieceType.KNIGHT))
+                | (Bitboards.kingAttacks(square) & chessMatch.getBitboard(color, PieceType.KING))
+                | (Bitboards.bishopAttacks(square, occupied) & (chessMatch.getBitboard(color, PieceType.BISHOP) | queens))
+                | (Bitboards.rookAttacks(square, occupied) & (chessMatch.getBitboard(color, PieceType.ROOK) | queens));
+        }
+        return attackers;
+    }
+
+    // type (ordinal) of the least valuable of the pieces, which all belong to the color
+    private static int leastValuable(ChessMatch chessMatch, long pieces, ColorChess color){
+        for(int type = 0; type < TYPES.length; type++){
+            if((pieces & chessMatch.getBitboard(color, TYPES[type])) != 0){
+                return type;
+            }
+        }
+        throw new IllegalStateException("Error: no piece of " + color + " in the attackers");
+    }
+
+    private static long colorPieces(ChessMatch chessMatch, ColorChess color){
+        long pieces = 0;
+        for(PieceType type : TYPES){
+            pieces |= chessMatch.getBitboard(color, type);
+        }
+        return pieces;
+    }
+
+    private static ColorChess opponent(ColorChess color){
+        return (color == ColorChess.WHITE) ? ColorChess.BLACK : ColorChess.WHITE;
+    }
+}
@@ -0,0 +1,193 @@
+package analysis;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed size cache of search results keyed by the position hash (ChessMatch.getHash()).
+ *
+ * The entries live outside the heap, in one direct ByteBuffer allocated up front. Each entry is
+ * two longs, the data and (hash XOR data), written without locks: a reader only accepts an entry
+ * when both longs agree with the hash, so an entry torn by two threads writing at once reads as
+ * a miss instead of wrong data. Entries are grouped in buckets of four (one 64 byte cache line).
+ *
+ * Data layout: move (bits 0-19), score (20-35, signed), depth (36-43), bound (44-45), age (46-51).
+ * A data value of 0 (NONE) means empty, since stored entries always have a bound.
+ */
+public class TranspositionTable {
+    public static final long NONE = 0L;
+
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int BUCKET_BYTES = ENTRY_BYTES * BUCKET_ENTRIES;
+    private static final int AGE_MASK = 63;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer table;
+    private final long bucketMask;
+    private volatile int age;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * @param megabytes size of the table, rounded down to a power of two number of buckets
+     */
+    public TranspositionTable(int megabytes){
+        if(megabytes < 1 || megabytes > 1024){
+            throw new IllegalArgumentException("Error: the size must be between 1 and 1024 MB");
+        }
+        long buckets = Long.highestOneBit(megabytes * 1024L * 1024L / BUCKET_BYTES);
+        table = ByteBuffer.allocateDirect((int)(buckets * BUCKET_BYTES)).order(ByteOrder.nativeOrder());
+        bucketMask = buckets - 1;
+    }
+
+    /**
+     * @return the data stored for the position, or NONE
+     */
+    public long probe(long hash){
+        int bucket = bucket(hash);
+        for(int i = 0; i < BUCKET_ENTRIES; i++){
+            int offset = bucket + i * ENTRY_BYTES;
+            long data = (long)LONGS.getOpaque(table, offset);
+            long check = (long)LONGS.getOpaque(table, offset + 8);
+            if(data != NONE && (check ^ data) == hash){
+                hits.increment();
+                return data;
+            }
+        }
+        misses.increment();
+        return NONE;
+    }
+
+    /**
+     * Replacement: the same position is always updated (the old move is kept if there is no new one),
+     * otherwise an empty entry is used, otherwise the entry with the lowest depth, older searches first.
+     */
+    public void store(long hash, int depth, int bound, int score, int move){
+        int bucket = bucket(hash);
+        int currentAge = age;
+        int replace = -1;
+        int worst = Integer.MAX_VALUE;
+        for(int i = 0; i < BUCKET_ENTRIES; i++){
+            int offset = bucket + i * ENTRY_BYTES;
+            long data = (long)LONGS.getOpaque(table, offset);
+            long check = (long)LONGS.getOpaque(table, offset + 8);
+            if(data == NONE){
+                if(replace < 0 || worst > Integer.MIN_VALUE){
+                    replace = offset;
+                    worst = Integer.MIN_VALUE;
+                }
+                continue;
+            }
+            if((check ^ data) == hash){
+                if(move == 0){
+                    move = move(data);
+                }
+                replace = offset;
+                worst = Integer.MIN_VALUE;
+                break;
+            }
+            // older entries lose 8 plies of depth for every search they are behind
+            int value = depth(data) - 8 * ((currentAge - age(data)) & AGE_MASK);
+            if(value < worst){
+                replace = offset;
+                worst = value;
+            }
+        }
+
+        long old = (long)LONGS.getOpaque(table, replace);
+        long oldCheck = (long)LONGS.getOpaque(table, replace + 8);
+        if(old != NONE && (oldCheck ^ old) != hash){
+            collisions.increment();
+        }
+        long data = pack(depth, bound, score, move, currentAge);
+        LONGS.setOpaque(table, replace, data);
+        LONGS.setOpaque(table, replace + 8, hash ^ data);
+    }
+
+    // called once per search, so the entries of the previous ones are replaced first
+    public void newSearch(){
+        age = (age + 1) & AGE_MASK;
+    }
+
+    public void clear(){
+        for(int offset = 0; offset < table.capacity(); offset += 8){
+            LONGS.setOpaque(table, offset, 0L);
+        }
+        hits.reset();
+        misses.reset();
+        collisions.reset();
+    }
+
+    // permille of the first thousand entries used by the current search
+    public int hashfull(){
+        int used = 0;
+        int currentAge = age;
+        int entries = Math.min(1000, table.capacity() / ENTRY_BYTES);
+        for(int i = 0; i < entries; i++){
+            long data = (long)LONGS.getOpaque(table, i * ENTRY_BYTES);
+            if(data != NONE && age(data) == currentAge){
+                used++;
+            }
+        }
+        return used * 1000 / entries;
+    }
+
+    public long getHits(){
+        return hits.sum();
+    }
+
+    public long getMisses(){
+        return misses.sum();
+    }
+
+    public long getCollisions(){
+        return collisions.sum();
+    }
+
+    public long getSizeInBytes(){
+        return table.capacity();
+    }
+
+    public static int move(long data){
+        return (int)(data & 0xFFFFF);
+    }
+
+    public static int score(long data){
+        return (short)(data >>> 20);
+    }
+
+    public static int depth(long data){
+        return (int)((data >>> 36) & 0xFF);
+    }
+
+    public static int bound(long data){
+        return (int)((data >>> 44) & 3);
+    }
+
+    private static int age(long data){
+        return (int)((data >>> 46) & AGE_MASK);
+    }
+
+    private static long pack(int depth, int bound, int score, int move, int age){
+        return (move & 0xFFFFFL)
+            | ((score & 0xFFFFL) << 20)
+            | ((long)Math.max(0, Math.min(depth, 255)) << 36)
+            | ((long)bound << 44)
+            | ((long)age << 46);
+    }
+
+    private int bucket(long hash){
+        return (int)(hash & bucketMask) * BUCKET_BYTES;
+    }
+}
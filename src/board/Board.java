@@ -1,17 +1,33 @@
 package board;
 
 public class Board{
+    // bitboards use one bit per square, so the board can't have more than 64 squares
+    private static final int MAX_SQUARES = 64;
+    private static final int MAX_KINDS = 16;
+
     private int rows;
     private int columns;
-    private Piece[][] pieces;
+    private Piece[] pieces;
+    private Position[] positions;
+
+    // one mask per kind of piece (see Piece.getKind) plus the occupancy of the whole board
+    private long[] bitboards = new long[MAX_KINDS];
+    private long occupied;
 
     public Board(int rows, int columns){
         if(rows < 1 || columns < 1){
             throw new BoardException("Error: there must be at least one row and column");
         }
+        if(rows * columns > MAX_SQUARES){
+            throw new BoardException("Error: the board can't have more than " + MAX_SQUARES + " squares");
+        }
         this.rows = rows;
         this.columns = columns;
-        pieces = new Piece[rows][columns];
+        pieces = new Piece[rows * columns];
+        positions = new Position[rows * columns];
+        for(int i = 0; i < positions.length; i++){
+            positions[i] = new Position(i / columns, i % columns);
+        }
     }
 
     public int getRow() {
@@ -26,34 +42,77 @@ public class Board{
         if(!positionExists(row, column)){
             throw new BoardException("Position not on the board");
         }
-        return pieces[row][column];
+        return pieces[row * columns + column];
     }
 
     public Piece piece(Position position){
         if(!positionExists(position)){
             throw new BoardException("Position not on the board");
         }
-        return pieces[position.getRow()][position.getColumn()];
+        return pieces[square(position)];
+    }
+
+    /**
+     * Square based access, used by the bitboard code (no bounds check)
+     * @param square row * columns + column
+     */
+    public Piece piece(int square){
+        return pieces[square];
+    }
+
+    public int square(Position position){
+        return position.getRow() * columns + position.getColumn();
+    }
+
+    public Position position(int square){
+        return positions[square];
+    }
+
+    public long getBitboard(int kind){
+        return bitboards[kind];
+    }
+
+    public long getOccupied(){
+        return occupied;
     }
 
     public void placePiece(Piece piece, Position position){
         if(thereIsAPiece(position)){
             throw new BoardException("There is already a piece on this position: " + position);
         }
-        pieces[position.getRow()][position.getColumn()] = piece;
-        piece.position = position;
+        placePiece(piece, square(position));
+    }
+
+    public void placePiece(Piece piece, int square){
+        if(pieces[square] != null){
+            throw new BoardException("There is already a piece on this position: " + positions[square]);
+        }
+        long bit = 1L << square;
+        pieces[square] = piece;
+        bitboards[piece.getKind()] |= bit;
+        occupied |= bit;
+        piece.position = positions[square];
+        piece.square = square;
     }
 
     public Piece removePiece(Position position){
         if(!positionExists(position)){
             throw new BoardException("Position not on the board");
         }
-        if(piece(position) == null){
+        return removePiece(square(position));
+    }
+
+    public Piece removePiece(int square){
+        Piece aux = pieces[square];
+        if(aux == null){
             return null;
         }
-        Piece aux = piece(position);
+        long bit = 1L << square;
+        bitboards[aux.getKind()] &= ~bit;
+        occupied &= ~bit;
         aux.position = null;
-        pieces[position.getRow()][position.getColumn()] = null;
+        aux.square = -1;
+        pieces[square] = null;
         return aux;
     }
 
@@ -70,6 +129,6 @@ public class Board{
             throw new BoardException("Position not found on the board");
         }
 
-        return piece(position) != null;
+        return pieces[square(position)] != null;
     }
 }
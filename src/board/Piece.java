@@ -2,6 +2,7 @@ package board;
 
 public abstract class Piece {
     protected Position position;
+    protected int square = -1;
     private Board board;
 
     public Piece(){}
@@ -15,21 +16,38 @@ public abstract class Piece {
         return board;
     }
 
-    public abstract boolean[][] possibleMoves();
+    // square index on the board (row * columns + column), -1 when the piece is not on the board
+    public int getSquare(){
+        return square;
+    }
+
+    /**
+     * @return index of the bitboard that keeps this kind of piece on the board
+     */
+    public abstract int getKind();
+
+    /**
+     * Bitboard (bit = row * columns + column) with the squares this piece can go to.
+     * The methods below are only views of it, so they don't generate anything else.
+     */
+    public abstract long possibleMovesBitboard();
+
+    public boolean[][] possibleMoves(){
+        boolean[][] mat = new boolean[board.getRow()][board.getColumn()];
+        long moves = possibleMovesBitboard();
+        while(moves != 0){
+            int target = Long.numberOfTrailingZeros(moves);
+            mat[target / board.getColumn()][target % board.getColumn()] = true;
+            moves &= moves - 1;
+        }
+        return mat;
+    }
 
     public boolean possibleMoves(Position position){
-        return possibleMoves()[position.getRow()][position.getColumn()];
+        return (possibleMovesBitboard() & (1L << board.square(position))) != 0;
     }
 
     public boolean isThereAnyPossibleMove(){
-        boolean[][] mat = possibleMoves();
-        for(int i = 0; i < mat.length; i++){
-            for(int j = 0; j < mat.length; j++){
-                if(mat[i][j]){
-                    return true;
-                }
-            }
-        }
-        return false;
+        return possibleMovesBitboard() != 0;
     }
 }
@@ -0,0 +1,158 @@
+package book;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import chess.ChessMatch;
+import chess.Move;
+import pgn.San;
+
+/**
+ * Polyglot (.bin) opening book. The file is a list of 16 byte entries sorted by key: Polyglot key
+ * (8 bytes), move (2), weight (2) and learn data (4, not used), all big-endian.
+ *
+ * The file is memory-mapped read-only and never copied to the heap: a lookup is a binary search
+ * on the mapping, so a book of hundreds of MB costs no memory per game and one PolyglotBook
+ * can be used by every thread (nothing changes after open).
+ */
+public class PolyglotBook {
+    private static final int ENTRY_SIZE = 16;
+
+    private final MappedByteBuffer entries;
+    private final int count;
+
+    private PolyglotBook(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE){
+                throw new IllegalArgumentException("Error: books bigger than 2 GB are not supported");
+            }
+            count = (int)(size / ENTRY_SIZE);
+            entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long)count * ENTRY_SIZE);
+        }
+    }
+
+    public static PolyglotBook open(Path file) throws IOException {
+        return new PolyglotBook(file);
+    }
+
+    public int getEntryCount(){
+        return count;
+    }
+
+    /**
+     * Puts the book moves of the position that are legal in moves, with their weights
+     * @param moves at least Move.MAX_MOVES long
+     * @return how many were found, 0 when the position is not in the book
+     */
+    public int probe(ChessMatch chessMatch, int[] moves, int[] weights){
+        long key = Polyglot.key(chessMatch);
+        int[] legal = new int[Move.MAX_MOVES];
+        int legalCount = -1;
+        int n = 0;
+        for(int entry = firstEntry(key); entry < count && getKey(entry) == key; entry++){
+            if(legalCount < 0){
+                legalCount = chessMatch.legalMoves(legal);
+            }
+            int bookMove = entries.getShort(entry * ENTRY_SIZE + 8) & 0xFFFF;
+            // a move that is not legal here (an other position with the same key) is left out
+            for(int i = 0; i < legalCount; i++){
+                if(Polyglot.encodeMove(legal[i]) == bookMove){
+                    moves[n] = legal[i];
+                    weights[n++] = entries.getShort(entry * ENTRY_SIZE + 10) & 0xFFFF;
+                    break;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return the book move with the biggest weight, Move.NONE when the position is not in the book
+     */
+    public int bestMove(ChessMatch chessMatch){
+        int[] moves = new int[Move.MAX_MOVES];
+        int[] weights = new int[Move.MAX_MOVES];
+        int n = probe(chessMatch, moves, weights);
+        int best = Move.NONE;
+        int bestWeight = -1;
+        for(int i = 0; i < n; i++){
+            if(weights[i] > bestWeight){
+                best = moves[i];
+                bestWeight = weights[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return a book move picked with a chance proportional to its weight (moves of weight 0 are
+     * never picked), Move.NONE when there is none
+     */
+    public int randomMove(ChessMatch chessMatch, Random random){
+        int[] moves = new int[Move.MAX_MOVES];
+        int[] weights = new int[Move.MAX_MOVES];
+        int n = probe(chessMatch, moves, weights);
+        int total = 0;
+        for(int i = 0; i < n; i++){
+            total += weights[i];
+        }
+        if(total == 0){
+            return Move.NONE;
+        }
+        int r = random.nextInt(total);
+        for(int i = 0; i < n; i++){
+            r -= weights[i];
+            if(r < 0){
+                return moves[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    private long getKey(int entry){
+        return entries.getLong(entry * ENTRY_SIZE);
+    }
+
+    // first entry with a key >= key (binary search, the keys are sorted as unsigned numbers)
+    private int firstEntry(long key){
+        int low = 0;
+        int high = count;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(Long.compareUnsigned(getKey(middle), key) < 0){
+                low = middle + 1;
+            } else{
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Prints the book moves of a position with their weights
+     * @param args book.bin [FEN]
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1){
+            System.out.println("Usage: PolyglotBook <book.bin> [FEN]");
+            return;
+        }
+        PolyglotBook book = open(Paths.get(args[0]));
+        ChessMatch chessMatch = new ChessMatch((args.length > 1) ? args[1] : ChessMatch.INITIAL_FEN);
+        int[] moves = new int[Move.MAX_MOVES];
+        int[] weights = new int[Move.MAX_MOVES];
+        long start = System.nanoTime();
+        int n = book.probe(chessMatch, moves, weights);
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("key %016x: %d moves of %,d entries in %.1f us%n", Polyglot.key(chessMatch), n, book.getEntryCount(), elapsed / 1e3);
+        for(int i = 0; i < n; i++){
+            System.out.println(San.toString(chessMatch, moves[i]) + " " + weights[i]);
+        }
+    }
+}
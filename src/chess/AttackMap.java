@@ -0,0 +1,91 @@
+package chess;
+
+import board.Board;
+
+/**
+ * Squares attacked by each color, kept up to date move by move.
+ * After a move only the pieces on the changed squares and the sliders that were
+ * looking at those squares are recomputed, so asking about one square is a single bit test.
+ */
+class AttackMap {
+    private Board board;
+
+    // attacks of the piece on each square (0 for empty squares)
+    private long[] attacksFrom = new long[64];
+    private long[] attacked = new long[ColorChess.values().length];
+
+    public AttackMap(Board board){
+        this.board = board;
+    }
+
+    public boolean isAttacked(int square, ColorChess color){
+        return (attacked[color.ordinal()] & Bitboards.bit(square)) != 0;
+    }
+
+    public long attackedBy(ColorChess color){
+        return attacked[color.ordinal()];
+    }
+
+    public void rebuild(){
+        update(-1L);
+    }
+
+    /**
+     * @param changed squares that got or lost a piece since the last update
+     */
+    public void update(long changed){
+        long occupied = board.getOccupied();
+        long dirty = changed;
+
+        // a slider only sees something different if one of the changed squares was on its rays
+        long sliders = occupied & ~changed & sliders();
+        while(sliders != 0){
+            int square = Long.numberOfTrailingZeros(sliders);
+            if((attacksFrom[square] & changed) != 0){
+                dirty |= Bitboards.bit(square);
+            }
+            sliders &= sliders - 1;
+        }
+
+        while(dirty != 0){
+            int square = Long.numberOfTrailingZeros(dirty);
+            ChessPiece p = (ChessPiece)board.piece(square);
+            attacksFrom[square] = (p == null) ? 0L : attacks(p, square, occupied);
+            dirty &= dirty - 1;
+        }
+
+        attacked[ColorChess.WHITE.ordinal()] = union(ColorChess.WHITE);
+        attacked[ColorChess.BLACK.ordinal()] = union(ColorChess.BLACK);
+    }
+
+    private long union(ColorChess color){
+        long mask = 0L;
+        long pieces = Bitboards.pieces(board, color);
+        while(pieces != 0){
+            mask |= attacksFrom[Long.numberOfTrailingZeros(pieces)];
+            pieces &= pieces - 1;
+        }
+        return mask;
+    }
+
+    private long sliders(){
+        return sliders(ColorChess.WHITE) | sliders(ColorChess.BLACK);
+    }
+
+    private long sliders(ColorChess color){
+        return Bitboards.pieces(board, color, PieceType.BISHOP)
+            | Bitboards.pieces(board, color, PieceType.ROOK)
+            | Bitboards.pieces(board, color, PieceType.QUEEN);
+    }
+
+    private static long attacks(ChessPiece p, int square, long occupied){
+        switch(p.getType()){
+            case PAWN: return Bitboards.pawnAttacks(p.getColor(), square);
+            case KNIGHT: return Bitboards.knightAttacks(square);
+            case BISHOP: return Bitboards.bishopAttacks(square, occupied);
+            case ROOK: return Bitboards.rookAttacks(square, occupied);
+            case QUEEN: return Bitboards.queenAttacks(square, occupied);
+            default: return Bitboards.kingAttacks(square);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package chess;
+
+import board.Board;
+
+/**
+ * Bitboard helpers for the 8x8 board.
+ * Square index = row * 8 + column, so bit 0 is a8 and bit 63 is h1 (same order as board.Position).
+ */
+public final class Bitboards {
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_B = FILE_A << 1;
+    public static final long FILE_G = FILE_A << 6;
+    public static final long FILE_H = FILE_A << 7;
+
+    private static final int KINDS_PER_COLOR = PieceType.values().length;
+
+    private static final int[][] ROOK_DIRECTIONS = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+
+    // leaper attacks don't depend on the other pieces, so one entry per square is enough
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    /**
+     * Magic bitboards for the sliders: the blockers on the relevant squares (mask) are multiplied by
+     * a magic number and the top bits of the product index the attack table of the square.
+     */
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = {
+        0x0980008011400020L, 0x8340004410002000L, 0x0880200090008268L, 0x0080080080100004L,
+        0x8100110004020800L, 0x0300010004000822L, 0x08801A0029000080L, 0x8100050001204882L,
+        0x0844800081400320L, 0x0804402010004000L, 0x0108802003100480L, 0x0004808008001000L,
+        0x0003001801001014L, 0x0002000200041008L, 0x0004008108042210L, 0x0105000100009042L,
+        0x0400808000400021L, 0xC100404010002000L, 0x0060008010002088L, 0x0400808008001000L,
+        0x4440808008000400L, 0x1002008004000280L, 0x40024400300D1248L, 0x0010020000408104L,
+        0x0101008200204200L, 0x8020002040005000L, 0x4100100080802000L, 0x4008006A80100280L,
+        0x1020080080040080L, 0x0004010040020040L, 0x0018A12400080290L, 0x6140004200008104L,
+        0x4000400020800090L, 0x2020002080804000L, 0x0000408202002010L, 0x0080100501000820L,
+        0x0000800400800800L, 0x000A200408014010L, 0x0100800200800100L, 0xA00800570200008CL,
+        0x008000406000C010L, 0x1040100028002000L, 0x0048200100110040L, 0x0068490210030020L,
+        0x1009080005010010L, 0x2142000804010100L, 0x1001080110840002L, 0x1801004400820001L,
+        0x010440208D020200L, 0x0000400020008080L, 0x0200200080100280L, 0x0000100020090100L,
+        0x0204008008020480L, 0x8104010040020040L, 0x78000201B0080400L, 0x0040800051002880L,
+        0x0050108001002041L, 0x208A801100614003L, 0x0006002042089082L, 0x0011090004201001L,
+        0x1002001004200802L, 0x0005000208040001L, 0x0002002701AC0822L, 0x000010250184004AL
+    };
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final long[] ROOK_TABLE;
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = {
+        0xC0A0012206040EA0L, 0x8010228200420001L, 0x0110008220400400L, 0x02445C0080106000L,
+        0x0044042004008100L, 0x0880900420408C05L, 0x0201080110080002L, 0x0000108094202000L,
+        0x0000042002040108L, 0x0000623024110042L, 0x0086100094811002L, 0x0000044502002080L,
+        0x0100460211400040L, 0x0008109004200004L, 0x0202320084844000L, 0x8040042421041009L,
+        0x201010C05102008CL, 0x1020888208024080L, 0x0108000C80290200L, 0x8048000420425203L,
+        0x0005000090402000L, 0x2080400201104100L, 0x8820420111101000L, 0x4AC0302208821802L,
+        0x000440001002A840L, 0x2002200010041080L, 0x1012080201004400L, 0x8440040002410120L,
+        0x1090820084010400L, 0x2084852012021000L, 0x12040062C1011003L, 0x02008205E1090080L,
+        0x088C102808042080L, 0x0802102200904280L, 0x8020209002080020L, 0x2200080800060A00L,
+        0x20C0004010010100L, 0x0802004100821003L, 0x0008024400008080L, 0x0000840102008090L,
+        0x0030A40420244007L, 0x0A19084210011282L, 0x0004082090019806L, 0x6108004208020080L,
+        0x0081200410110100L, 0x1040810701010208L, 0x0282047832012080L, 0x0010020099000020L,
+        0x000E010422400840L, 0x10204208B0089090L, 0x081004440C048000L, 0x88C0180084040001L,
+        0x3100020803040080L, 0x890070A041210C00L, 0x0020200101010A09L, 0x0004100240410400L,
+        0x0006004402080200L, 0x0801062484042000L, 0x00010002D7441004L, 0x0810080000208800L,
+        0x0000020808030411L, 0x1450001020014440L, 0x004060081081A288L, 0x0044011404108A00L
+    };
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] BISHOP_TABLE;
+
+    // squares strictly between two squares on the same row, column or diagonal (0 if they aren't aligned)
+    private static final long[] BETWEEN = new long[64 * 64];
+
+    static {
+        for(int square = 0; square < 64; square++){
+            long b = 1L << square;
+            KNIGHT_ATTACKS[square] = ((b << 17) & ~FILE_A) | ((b << 15) & ~FILE_H)
+                | ((b << 10) & ~(FILE_A | FILE_B)) | ((b << 6) & ~(FILE_G | FILE_H))
+                | ((b >>> 17) & ~FILE_H) | ((b >>> 15) & ~FILE_A)
+                | ((b >>> 10) & ~(FILE_G | FILE_H)) | ((b >>> 6) & ~(FILE_A | FILE_B));
+
+            long row = b | ((b << 1) & ~FILE_A) | ((b >>> 1) & ~FILE_H);
+            KING_ATTACKS[square] = (row | (row << 8) | (row >>> 8)) & ~b;
+
+            PAWN_ATTACKS[ColorChess.WHITE.ordinal()][square] = ((b >>> 9) & ~FILE_H) | ((b >>> 7) & ~FILE_A);
+            PAWN_ATTACKS[ColorChess.BLACK.ordinal()][square] = ((b << 7) & ~FILE_H) | ((b << 9) & ~FILE_A);
+        }
+
+        ROOK_TABLE = initMagics(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS);
+        BISHOP_TABLE = initMagics(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS);
+
+        for(int a = 0; a < 64; a++){
+            for(int b = 0; b < 64; b++){
+                if((rookAttacks(a, 0L) & bit(b)) != 0){
+                    BETWEEN[a * 64 + b] = rookAttacks(a, bit(b)) & rookAttacks(b, bit(a));
+                } else if((bishopAttacks(a, 0L) & bit(b)) != 0){
+                    BETWEEN[a * 64 + b] = bishopAttacks(a, bit(b)) & bishopAttacks(b, bit(a));
+                }
+            }
+        }
+    }
+
+    private Bitboards(){}
+
+    public static long bit(int square){
+        return 1L << square;
+    }
+
+    // all the pieces of one color
+    public static long pieces(Board board, ColorChess color){
+        int first = color.ordinal() * KINDS_PER_COLOR;
+        long mask = 0L;
+        for(int i = first; i < first + KINDS_PER_COLOR; i++){
+            mask |= board.getBitboard(i);
+        }
+        return mask;
+    }
+
+    public static long pieces(Board board, ColorChess color, PieceType type){
+        return board.getBitboard(ChessPiece.kind(color, type));
+    }
+
+    public static long knightAttacks(int square){
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square){
+        return KING_ATTACKS[square];
+    }
+
+    // squares attacked by a pawn of the given color (white pawns go up, to row 0)
+    public static long pawnAttacks(ColorChess color, int square){
+        return PAWN_ATTACKS[color.ordinal()][square];
+    }
+
+    public static long rookAttacks(int square, long occupied){
+        return ROOK_TABLE[ROOK_OFFSETS[square] + (int)(((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    public static long bishopAttacks(int square, long occupied){
+        return BISHOP_TABLE[BISHOP_OFFSETS[square] + (int)(((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    public static long queenAttacks(int square, long occupied){
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    public static long between(int a, int b){
+        return BETWEEN[a * 64 + b];
+    }
+
+    /**
+     * @return every piece of the given color that attacks the square
+     */
+    public static long attackers(Board board, int square, ColorChess color, long occupied){
+        long queens = pieces(board, color, PieceType.QUEEN);
+        // a pawn of this color attacks the square if a pawn of the other color on the square would attack it back
+        ColorChess opponent = (color == ColorChess.WHITE) ? ColorChess.BLACK : ColorChess.WHITE;
+        return (pawnAttacks(opponent, square) & pieces(board, color, PieceType.PAWN))
+            | (knightAttacks(square) & pieces(board, color, PieceType.KNIGHT))
+            | (kingAttacks(square) & pieces(board, color, PieceType.KING))
+            | (bishopAttacks(square, occupied) & (pieces(board, color, PieceType.BISHOP) | queens))
+            | (rookAttacks(square, occupied) & (pieces(board, color, PieceType.ROOK) | queens));
+    }
+
+    // same as above, for pieces that are not on a board yet (one bitboard per kind)
+    public static long attackers(long[] bitboards, int square, ColorChess color, long occupied){
+        long queens = bitboards[ChessPiece.kind(color, PieceType.QUEEN)];
+        ColorChess opponent = (color == ColorChess.WHITE) ? ColorChess.BLACK : ColorChess.WHITE;
+        return (pawnAttacks(opponent, square) & bitboards[ChessPiece.kind(color, PieceType.PAWN)])
+            | (knightAttacks(square) & bitboards[ChessPiece.kind(color, PieceType.KNIGHT)])
+            | (kingAttacks(square) & bitboards[ChessPiece.kind(color, PieceType.KING)])
+            | (bishopAttacks(square, occupied) & (bitboards[ChessPiece.kind(color, PieceType.BISHOP)] | queens))
+            | (rookAttacks(square, occupied) & (bitboards[ChessPiece.kind(color, PieceType.ROOK)] | queens));
+    }
+
+    public static boolean isAttacked(Board board, int square, ColorChess color){
+        return attackers(board, square, color, board.getOccupied()) != 0;
+    }
+
+    /**
+     * Fills the attack table of every square for every subset of its relevant blockers.
+     * The magics were found by trial (no two blocker sets with different attacks share an entry).
+     * @return the attack table shared by the 64 squares
+     */
+    private static long[] initMagics(int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets){
+        int size = 0;
+        for(int square = 0; square < 64; square++){
+            masks[square] = relevantSquares(square, directions);
+            shifts[square] = 64 - Long.bitCount(masks[square]);
+            offsets[square] = size;
+            size += 1 << Long.bitCount(masks[square]);
+        }
+
+        long[] table = new long[size];
+        for(int square = 0; square < 64; square++){
+            long mask = masks[square];
+            // every subset of the mask (carry-rippler trick)
+            long subset = 0L;
+            do{
+                int index = offsets[square] + (int)((subset * magics[square]) >>> shifts[square]);
+                table[index] = slidingAttacks(square, subset, directions);
+                subset = (subset - mask) & mask;
+            } while(subset != 0);
+        }
+        return table;
+    }
+
+    // squares whose blockers change the attacks (the last square of each ray never does)
+    private static long relevantSquares(int square, int[][] directions){
+        long mask = 0L;
+        for(int[] d : directions){
+            int row = (square >>> 3) + d[0];
+            int column = (square & 7) + d[1];
+            while(row + d[0] >= 0 && row + d[0] < 8 && column + d[1] >= 0 && column + d[1] < 8){
+                mask |= 1L << (row * 8 + column);
+                row += d[0];
+                column += d[1];
+            }
+        }
+        return mask;
+    }
+
+    // walks each direction until the border or the first piece (that square is included)
+    private static long slidingAttacks(int square, long occupied, int[][] directions){
+        long mask = 0L;
+        for(int[] d : directions){
+            int row = (square >>> 3) + d[0];
+            int column = (square & 7) + d[1];
+            while(row >= 0 && row < 8 && column >= 0 && column < 8){
+                long b = 1L << (row * 8 + column);
+                mask |= b;
+                if((occupied & b) != 0){
+                    break;
+                }
+                row += d[0];
+                column += d[1];
+            }
+        }
+        return mask;
+    }
+}
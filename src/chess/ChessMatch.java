@@ -2,8 +2,8 @@ package chess;
 
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import board.Board;
 import board.Piece;
@@ -16,29 +16,159 @@ import chess.pieces.Queen;
 import chess.pieces.Rook;
 
 public class ChessMatch {
+    public static final String INITIAL_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final PieceType[] TYPES = PieceType.values();
+    private static final ColorChess[] COLORS = ColorChess.values();
+    // a1, c1, ... (a8 is light)
+    private static final long DARK_SQUARES = 0x55AA55AA55AA55AAL;
+    private static final char[] FEN_LETTERS = {'p', 'n', 'b', 'r', 'q', 'k'};
+
     private int turn;
+    // plies since the last capture or pawn move (fifty-move rule)
+    private int halfmoveClock;
     private ColorChess currentPlayer;
     private Board board;
     private boolean check;
     private boolean checkMate;
     private ChessPiece enPassantVulnerable;
     private ChessPiece promoted;
+    private AttackMap attacks;
+    private MoveGenerator moveGenerator;
+    private int[] moveBuffer = new int[Move.MAX_MOVES];
+
+    // Zobrist key of the position, with the castling rights and passant file it was last updated with
+    private long hash;
+    private int hashedCastling;
+    private int hashedEnPassantFile = -1;
 
-    private List<Piece> piecesOnTheBoard = new ArrayList<>();
+    // evaluation terms (see PieceSquareTables), white minus black, kept by putPiece and takePiece like the hash
+    private int middlegameScore;
+    private int endgameScore;
+    private int phase;
+    // the board as PositionSnapshot keeps it (4 bits per square), so a snapshot only copies it
+    private long[] packedSquares = new long[4];
+
+    private PieceRegistry piecesOnTheBoard = new PieceRegistry();
     private List<Piece> capturedPieces = new ArrayList<>();
 
+    // what makeMove(int) needs to be undone, one entry per ply (grows if a line gets longer).
+    // The moves after ply stay in plyMoves up to lastPly, so the ones taken back can be replayed.
+    private int ply;
+    private int lastPly;
+    private int[] plyMoves = new int[256];
+    private ChessPiece[] plyCaptured = new ChessPiece[256];
+    private ChessPiece[] plyPawns = new ChessPiece[256];
+    private ChessPiece[] plyEnPassant = new ChessPiece[256];
+    private boolean[] plyCheck = new boolean[256];
+    private long[] plyHash = new long[256];
+    private int[] plyHashedState = new int[256];
+    private int[] plyHalfmove = new int[256];
+    private ChessPiece[] plyPromoted = new ChessPiece[256];
+    private boolean[] plyCheckMate = new boolean[256];
+    // a copy keeps the hashes of the positions of the original since its last capture or pawn move, oldest
+    // first, so repetitions still see them (plies -earlierHashes.length to -1, see getHash(int))
+    private long[] earlierHashes = new long[0];
+
+    // loadFen reads the position here first, so a wrong FEN doesn't change the match (kind + 1, 0 = empty);
+    // loadSnapshot uses it too
+    private int[] fenKinds = new int[64];
+    private long[] fenBitboards = new long[12];
+    // pieces taken off by loadFen, reused by the next position instead of creating new ones
+    private ChessPiece[][] sparePieces = new ChessPiece[12][16];
+    private int[] spareCount = new int[12];
+
     public ChessMatch() {
         board = new Board(8, 8);
         turn = 1;
         currentPlayer = ColorChess.WHITE;
         check = false;
+        attacks = new AttackMap(board);
+        moveGenerator = new MoveGenerator(board, attacks);
         initialSetup();
+        attacks.rebuild();
+        updateStateHash();
+    }
+
+    /**
+     * Starts the match from a FEN position (see loadFen)
+     */
+    public ChessMatch(CharSequence fen){
+        board = new Board(8, 8);
+        attacks = new AttackMap(board);
+        moveGenerator = new MoveGenerator(board, attacks);
+        loadFen(fen);
+    }
+
+    public static ChessMatch fromFen(CharSequence fen){
+        return new ChessMatch(fen);
+    }
+
+    /**
+     * Starts the match from a snapshot (see loadSnapshot)
+     */
+    public ChessMatch(PositionSnapshot snapshot){
+        board = new Board(8, 8);
+        attacks = new AttackMap(board);
+        moveGenerator = new MoveGenerator(board, attacks);
+        loadSnapshot(snapshot);
+    }
+
+    // copy with new pieces on a new board, so it can be used by another thread
+    private ChessMatch(ChessMatch other){
+        board = new Board(8, 8);
+        attacks = new AttackMap(board);
+        moveGenerator = new MoveGenerator(board, attacks);
+        for(int square = 0; square < 64; square++){
+            ChessPiece p = (ChessPiece)other.board.piece(square);
+            if(p != null){
+                ChessPiece copy = newPiece(p.getType(), p.getColor());
+                copy.setMoveCount(p.getMoveCount());
+                putPiece(copy, square);
+                if(p == other.enPassantVulnerable){
+                    enPassantVulnerable = copy;
+                }
+                if(p == other.promoted){
+                    promoted = copy;
+                }
+            }
+        }
+        turn = other.turn;
+        halfmoveClock = other.halfmoveClock;
+        earlierHashes = new long[Math.min(other.halfmoveClock, other.ply - other.getFirstPly())];
+        for(int i = 0; i < earlierHashes.length; i++){
+            earlierHashes[i] = other.getHash(other.ply - earlierHashes.length + i);
+        }
+        currentPlayer = other.currentPlayer;
+        check = other.check;
+        checkMate = other.checkMate;
+        if(currentPlayer == ColorChess.BLACK){
+            hash ^= Zobrist.side();
+        }
+        attacks.rebuild();
+        updateStateHash();
+    }
+
+    /**
+     * @return an independent copy of the position (the moves made before can't be undone on it)
+     */
+    public ChessMatch copy(){
+        return new ChessMatch(this);
     }
     
     public int getTurn(){
         return this.turn;
     }
 
+    public int getHalfmoveClock(){
+        return this.halfmoveClock;
+    }
+
+    // the turn counts plies from 1, the FEN counts moves of both players
+    public int getFullmoveNumber(){
+        return (turn + (checkMate ? 1 : 0) + 1) / 2;
+    }
+
     public ColorChess getCurrentPlayer(){
         return currentPlayer;
     }
@@ -51,6 +181,67 @@ public class ChessMatch {
         return checkMate;
     }
 
+    /**
+     * Whether the game is over after the last move: checkmate, stalemate, or a draw by insufficient
+     * material, the fifty-move rule or threefold repetition. The cheap tests go first and the legal
+     * moves are only looked for until the first one, so it can run after every move.
+     */
+    public Termination getTermination(){
+        if(checkMate){
+            return Termination.CHECKMATE;
+        }
+        if(isInsufficientMaterial()){
+            return Termination.INSUFFICIENT_MATERIAL;
+        }
+        // a checkmate on the last move counts before the draws
+        if(check && !moveGenerator.hasLegalMove(currentPlayer, moveBuffer)){
+            return Termination.CHECKMATE;
+        }
+        if(halfmoveClock >= 100){
+            return Termination.FIFTY_MOVES;
+        }
+        if(repetitions() >= 3){
+            return Termination.THREEFOLD_REPETITION;
+        }
+        if(!check && !moveGenerator.hasLegalMove(currentPlayer, moveBuffer)){
+            return Termination.STALEMATE;
+        }
+        return Termination.NONE;
+    }
+
+    /**
+     * @return how many times the position (with the same player, castling rights and passant) has been
+     * on the board, counting the plies made since the position was set (and, on a copy, the plies of the
+     * original before it). Only the plies after the last
+     * capture or pawn move (halfmove clock) can repeat it, and only every second one has the same player.
+     */
+    public int repetitions(){
+        int count = 1;
+        int first = Math.max(getFirstPly(), ply - halfmoveClock);
+        for(int i = ply - 2; i >= first; i -= 2){
+            if(getHash(i) == hash){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // no sequence of legal moves can end in a checkmate: kings alone, one minor piece, or bishops all on squares of one color
+    private boolean isInsufficientMaterial(){
+        for(ColorChess color : COLORS){
+            if(piecesOnTheBoard.count(color, PieceType.PAWN) + piecesOnTheBoard.count(color, PieceType.ROOK) + piecesOnTheBoard.count(color, PieceType.QUEEN) != 0){
+                return false;
+            }
+        }
+        int knights = piecesOnTheBoard.count(ColorChess.WHITE, PieceType.KNIGHT) + piecesOnTheBoard.count(ColorChess.BLACK, PieceType.KNIGHT);
+        int bishops = piecesOnTheBoard.count(ColorChess.WHITE, PieceType.BISHOP) + piecesOnTheBoard.count(ColorChess.BLACK, PieceType.BISHOP);
+        if(knights + bishops <= 1){
+            return true;
+        }
+        long bishopSquares = Bitboards.pieces(board, ColorChess.WHITE, PieceType.BISHOP) | Bitboards.pieces(board, ColorChess.BLACK, PieceType.BISHOP);
+        return knights == 0 && ((bishopSquares & DARK_SQUARES) == 0 || (bishopSquares & ~DARK_SQUARES) == 0);
+    }
+
     public ChessPiece getEnPassantVulnerable(){
         return this.enPassantVulnerable;
     }
@@ -59,6 +250,77 @@ public class ChessMatch {
         return this.promoted;
     }
 
+    /**
+     * @return 64 bit Zobrist key of the position (pieces, player, castling rights and passant file)
+     */
+    public long getHash(){
+        return this.hash;
+    }
+
+    /**
+     * @return hash of the position after the given number of plies, from getFirstPly() to getPly()
+     */
+    public long getHash(int ply){
+        if(ply < getFirstPly() || ply > this.ply){
+            throw new IllegalArgumentException("Error: no position at ply " + ply);
+        }
+        if(ply == this.ply){
+            return hash;
+        }
+        return (ply < 0) ? earlierHashes[earlierHashes.length + ply] : plyHash[ply];
+    }
+
+    // 0, or on a copy minus the number of plies of the original it remembers for repetitions
+    public int getFirstPly(){
+        return -earlierHashes.length;
+    }
+
+    /**
+     * Material and piece-square tables, blended by the phase of the game. The terms are updated by
+     * every piece put on or taken from the board, so this is only a few additions.
+     * @return score in centipawns from the side of the player to move
+     */
+    public int getEvaluation(){
+        int score = PieceSquareTables.taper(middlegameScore, endgameScore, phase);
+        return (currentPlayer == ColorChess.WHITE) ? score : -score;
+    }
+
+    /**
+     * Same as getEvaluation, but summing every piece on the board again. Only to check the
+     * incremental terms while debugging.
+     */
+    public int recomputeEvaluation(){
+        int middlegame = 0;
+        int endgame = 0;
+        int gamePhase = 0;
+        for(int kind = 0; kind < 12; kind++){
+            long pieces = Bitboards.pieces(board, ColorChess.values()[kind / 6], TYPES[kind % 6]);
+            while(pieces != 0){
+                int square = Long.numberOfTrailingZeros(pieces);
+                middlegame += PieceSquareTables.middlegame(kind, square);
+                endgame += PieceSquareTables.endgame(kind, square);
+                gamePhase += PieceSquareTables.phase(kind);
+                pieces &= pieces - 1;
+            }
+        }
+        int score = PieceSquareTables.taper(middlegame, endgame, gamePhase);
+        return (currentPlayer == ColorChess.WHITE) ? score : -score;
+    }
+
+    // Is the position attacked by any piece of the color?
+    public boolean isAttacked(ChessPosition position, ColorChess color){
+        return attacks.isAttacked(board.square(position.toPosition()), color);
+    }
+
+    // the pieces captured by the moves made since the position was set (a takeback gives them back)
+    public List<ChessPiece> getCapturedPieces(){
+        List<ChessPiece> list = new ArrayList<>(capturedPieces.size());
+        for(Piece p : capturedPieces){
+            list.add((ChessPiece)p);
+        }
+        return list;
+    }
+
     public ChessPiece[][] getPieces(){
         ChessPiece[][] mat = new ChessPiece[board.getRow()][board.getColumn()];
         for (int i = 0; i < board.getRow(); i++){
@@ -69,12 +331,53 @@ public class ChessMatch {
         return mat;
     }
 
+    // piece on one square (index = row * 8 + column, see Bitboards), null if empty
+    public ChessPiece getPiece(int square){
+        return (ChessPiece)board.piece(square);
+    }
+
+    public long getBitboard(ColorChess color, PieceType type){
+        return Bitboards.pieces(board, color, type);
+    }
+
+    public long getOccupied(){
+        return board.getOccupied();
+    }
+
     public boolean[][] possibleMoves(ChessPosition sourcePosition){
         Position position = sourcePosition.toPosition();
         validateSourcePosition(position);
         return board.piece(position).possibleMoves();
     }
 
+    /**
+     * Writes the moves of the current player (packed, see Move) into a reusable buffer
+     * @param moves buffer with at least Move.MAX_MOVES entries
+     * @return number of moves written
+     */
+    public int possibleMoves(int[] moves){
+        int count = 0;
+        long own = Bitboards.pieces(board, currentPlayer);
+        while(own != 0){
+            count = ((ChessPiece)board.piece(Long.numberOfTrailingZeros(own))).possibleMoves(moves, count);
+            own &= own - 1;
+        }
+        return count;
+    }
+
+    /**
+     * Writes only the legal moves of the current player (packed, see Move) into a reusable buffer.
+     * A checkmate has none: the turn stays with the winner then, whose moves would take the king.
+     * @param moves buffer with at least Move.MAX_MOVES entries
+     * @return number of moves written
+     */
+    public int legalMoves(int[] moves){
+        if(checkMate){
+            return 0;
+        }
+        return moveGenerator.legalMoves(currentPlayer, moves);
+    }
+
     /**
      * @param sourcePosition
      * @param targetPosition
@@ -84,42 +387,70 @@ public class ChessMatch {
         Position target = targetPosition.toPosition();
         validateSourcePosition(source);
         validateTargetPosition(source, target);
-        Piece capturedPiece = makeMove(source, target);
-        
-        if(testCheck(currentPlayer)){
-            undoMove(source, target, capturedPiece);
+
+        // the legal moves already exclude the ones that leave the king in check
+        int move = legalMove(board.square(source), board.square(target));
+        if(move == Move.NONE){
             throw new ChessException("You Cannot Put YourSelf In Check");
         }
-        
-        ChessPiece movedPiece = (ChessPiece)board.piece(target);
+        playMove(move);
+        return plyCaptured[ply - 1];
+    }
 
-        // special move: promoted
-        promoted = null;
-        if(movedPiece instanceof Pawn){
-            if((movedPiece.getColor() == ColorChess.WHITE && target.getRow() == 0) || (movedPiece.getColor() == ColorChess.BLACK && target.getRow() == 7)){
-                promoted = (ChessPiece)board.piece(target);
-                promoted = replacePromotedPiece("Q");
-            }
-        } 
+    /**
+     * makeMove plus what performChessMovie does after a move: the promoted piece is kept for
+     * replacePromotedPiece and, when it is checkmate, the turn stays with the winner
+     */
+    private void playMove(int move){
+        makeMove(move);
+        promoted = (Move.promotion(move) != 0) ? (ChessPiece)board.piece(Move.to(move)) : null;
+        if(testCheckMate(currentPlayer)){
+            checkMate = true;
+            turn--;
+            currentPlayer = opponent(currentPlayer);
+            hash ^= Zobrist.side();
+        }
+    }
 
-        check = (testCheck(opponent(currentPlayer))) ? true : false;
+    // number of plies made (and not taken back) since the position was set
+    public int getPly(){
+        return ply;
+    }
 
-        if(testCheckMate(opponent(currentPlayer))){
-            this.checkMate = true;
-        } else{
-            nextTurn();
-        }
+    // number of plies replayToPly can go forward to; a new move different from the next one forgets them
+    public int getLastPly(){
+        return lastPly;
+    }
 
-        // special move: checking if it is in passant
-        if(movedPiece instanceof Pawn && (target.getRow() == source.getRow() - 2 || target.getRow() == source.getRow() + 2)){
-            enPassantVulnerable = movedPiece;
-        } else{
-            enPassantVulnerable = null;
+    /**
+     * Takes back the last n moves, restoring everything exactly as it was (pieces, promotions,
+     * passant, castling, check, checkmate, counters and hash). They can be replayed with replayToPly.
+     */
+    public void takeback(int n){
+        if(n < 0 || n > ply){
+            throw new IllegalArgumentException("Error: there are only " + ply + " moves to take back");
         }
+        for(int i = 0; i < n; i++){
+            undoMove();
+        }
+    }
 
-        return (ChessPiece)capturedPiece;
+    /**
+     * Goes to the position after the given number of plies, taking moves back or replaying the
+     * ones taken back (0 is the position the match started from)
+     */
+    public void replayToPly(int target){
+        if(target < 0 || target > lastPly){
+            throw new IllegalArgumentException("Error: the ply must be between 0 and " + lastPly);
+        }
+        while(ply > target){
+            undoMove();
+        }
+        while(ply < target){
+            playMove(plyMoves[ply]);
+        }
     }
-    
+
     /**
      * @REMEBER
      * @method replaces the pawn and add the new piece
@@ -128,15 +459,35 @@ public class ChessMatch {
         if(promoted == null){
             throw new IllegalStateException("There Is No Piece To Be Promoted");
         }
+        ChessPiece newPiece = promote(type);
+        promoted = newPiece;
+        // the move in the history promotes to the new piece, so a replay does the same
+        if(ply > 0 && Move.promotion(plyMoves[ply - 1]) != 0){
+            int move = plyMoves[ply - 1];
+            plyMoves[ply - 1] = Move.of(Move.from(move), Move.to(move), Move.flags(move), newPiece.getType().ordinal());
+        }
 
+        // performChessMovie tested check and checkmate with a queen, the new piece may change both
+        ColorChess opponent = opponent(newPiece.getColor());
+        boolean mate = testCheckMate(opponent);
+        check = testCheck(opponent);
+        if(mate != checkMate){
+            // the turn stays with the winner when it is checkmate
+            turn += mate ? -1 : 1;
+            currentPlayer = mate ? newPiece.getColor() : opponent;
+            hash ^= Zobrist.side();
+            checkMate = mate;
+        }
+        return newPiece;
+    }
+
+    private ChessPiece promote(String type){
         Position pos = promoted.getChessPosition().toPosition();
-        Piece p = board.removePiece(pos);
-        piecesOnTheBoard.remove(p);
+        takePiece(pos);
 
         ChessPiece newPiece = newPiece(type, promoted.getColor());
-        board.placePiece(newPiece, pos);
-        piecesOnTheBoard.add(newPiece);
-
+        putPiece(newPiece, pos);
+        attacks.update(Bitboards.bit(board.square(pos)));
         return newPiece;
     }
 
@@ -154,6 +505,17 @@ public class ChessMatch {
         return new Queen(board, color);
     }
 
+    private ChessPiece newPiece(PieceType type, ColorChess color){
+        switch(type){
+            case PAWN: return new Pawn(board, color, this);
+            case KNIGHT: return new Knight(board, color);
+            case BISHOP: return new Bishop(board, color);
+            case ROOK: return new Rook(board, color);
+            case QUEEN: return new Queen(board, color);
+            default: return new King(board, color, this);
+        }
+    }
+
     // Exceptions to show to the user when he/she select one wrong position or piece
     private void validateSourcePosition(Position position){
         if(!board.thereIsAPiece(position)){
@@ -175,108 +537,242 @@ public class ChessMatch {
         }
     }
 
+    // every piece goes in and out of the board through these, so the registry, the hash, the evaluation
+    // and the packed squares are always in sync
+    private void putPiece(ChessPiece piece, Position position){
+        putPiece(piece, board.square(position));
+    }
+
+    private ChessPiece takePiece(Position position){
+        return takePiece(board.square(position));
+    }
+
+    private void putPiece(ChessPiece piece, int square){
+        board.placePiece(piece, square);
+        int kind = piece.getKind();
+        piecesOnTheBoard.add(kind, square);
+        hash ^= Zobrist.piece(kind, square);
+        packedSquares[square >>> 4] |= (long)(kind + 1) << ((square & 15) * 4);
+        middlegameScore += PieceSquareTables.middlegame(kind, square);
+        endgameScore += PieceSquareTables.endgame(kind, square);
+        phase += PieceSquareTables.phase(kind);
+    }
+
+    private ChessPiece takePiece(int square){
+        ChessPiece piece = (ChessPiece)board.removePiece(square);
+        if(piece != null){
+            int kind = piece.getKind();
+            piecesOnTheBoard.remove(kind, square);
+            hash ^= Zobrist.piece(kind, square);
+            packedSquares[square >>> 4] &= ~(15L << ((square & 15) * 4));
+            middlegameScore -= PieceSquareTables.middlegame(kind, square);
+            endgameScore -= PieceSquareTables.endgame(kind, square);
+            phase -= PieceSquareTables.phase(kind);
+        }
+        return piece;
+    }
+
     /**
-     * 
-     * @param source
-     * @param target
-     * @return capturedPiece if has one, 
-     * this method is used on every moved
+     * Makes one packed move (see Move) from legalMoves and passes the turn, so it can be undone
+     * with undoMove(). Used by analysis: the promotion piece comes in the move and the checkmate is not tested.
      */
-    private Piece makeMove(Position source, Position target){
-        ChessPiece p = (ChessPiece)board.removePiece(source);
+    public void makeMove(int move){
+        if(ply == plyMoves.length){
+            growPlies();
+        }
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flags = Move.flags(move);
+        if(ply >= lastPly || plyMoves[ply] != move){
+            lastPly = ply + 1;
+        }
+        plyMoves[ply] = move;
+        plyEnPassant[ply] = enPassantVulnerable;
+        plyPromoted[ply] = promoted;
+        plyCheckMate[ply] = checkMate;
+        plyCheck[ply] = check;
+        plyHash[ply] = hash;
+        plyHashedState[ply] = (hashedCastling << 4) | (hashedEnPassantFile & 15);
+        plyHalfmove[ply] = halfmoveClock;
+
+        ChessPiece p = takePiece(from);
         p.increaseMoveCount();
-        Piece capturedPiece = board.removePiece(target);
-        board.placePiece(p, target);
+        long changed = Bitboards.bit(from) | Bitboards.bit(to);
 
-        if(capturedPiece != null){
-            piecesOnTheBoard.remove(capturedPiece);
-            capturedPieces.add(capturedPiece);
+        // special move: passant (the captured pawn is beside the source square)
+        int capturedSquare = ((flags & Move.EN_PASSANT) != 0) ? (from & ~7) | (to & 7) : to;
+        ChessPiece captured = takePiece(capturedSquare);
+        changed |= Bitboards.bit(capturedSquare);
+        if(captured != null){
+            capturedPieces.add(captured);
         }
+        plyCaptured[ply] = captured;
+        halfmoveClock = (p.getType() == PieceType.PAWN || captured != null) ? 0 : halfmoveClock + 1;
 
-        // special move: small castling
-        if(p instanceof King && target.getColumn() == source.getColumn() + 2){
-            Position sourceR = new Position (source.getRow(), source.getColumn() + 3);
-            Position targetR = new Position (source.getRow(), source.getColumn() + 1);
-            ChessPiece rook = (ChessPiece)board.removePiece(sourceR);
-            board.placePiece(rook, targetR);
-            rook.increaseMoveCount();
+        // special move: promoted
+        if(Move.promotion(move) != 0){
+            plyPawns[ply] = p;
+            p = newPiece(Move.promotionType(move), p.getColor());
+            p.setMoveCount(1);
+        } else{
+            plyPawns[ply] = null;
         }
+        putPiece(p, to);
 
-        // special move: big castling
-        if(p instanceof King && target.getColumn() == source.getColumn() - 2){
-            Position sourceR = new Position (source.getRow(), source.getColumn() - 4);
-            Position targetR = new Position (source.getRow(), source.getColumn() - 1);
-            ChessPiece rook = (ChessPiece)board.removePiece(sourceR);
-            board.placePiece(rook, targetR);
+        // special move: castling
+        if((flags & Move.CASTLING) != 0){
+            int sourceR = (to > from) ? from + 3 : from - 4;
+            int targetR = (to > from) ? from + 1 : from - 1;
+            ChessPiece rook = takePiece(sourceR);
+            putPiece(rook, targetR);
             rook.increaseMoveCount();
+            changed |= Bitboards.bit(sourceR) | Bitboards.bit(targetR);
         }
 
-        // special move: passant
-        if(p instanceof Pawn){
-            if(source.getColumn() != target.getColumn() && capturedPiece == null){
-                Position pawnPosition;
-                if(p.getColor() == ColorChess.WHITE){
-                    pawnPosition = new Position(target.getRow() + 1, target.getColumn());
-                } else{
-                    pawnPosition = new Position(target.getRow() - 1, target.getColumn());
-                }
-                capturedPiece = board.removePiece(pawnPosition);
-                capturedPieces.add(capturedPiece);
-                piecesOnTheBoard.remove(capturedPiece);
-            }
-        }
-        
-        return capturedPiece;
+        attacks.update(changed);
+        enPassantVulnerable = ((flags & Move.DOUBLE_PUSH) != 0) ? p : null;
+        promoted = null;
+        checkMate = false;
+        nextTurn();
+        updateStateHash();
+        check = testCheck(currentPlayer);
+        ply++;
     }
 
-    private void undoMove(Position source, Position target, Piece capturedPiece){
-        ChessPiece p = (ChessPiece)board.removePiece(target);
-        p.decreaseMoveCount();
-        board.placePiece(p, source);
-
-        if (capturedPiece != null){
-            board.placePiece(capturedPiece, target);
-            capturedPieces.remove(capturedPiece);
-            piecesOnTheBoard.add(capturedPiece);
+    /**
+     * Undoes the last move (made with makeMove(int) or performChessMovie) from the state saved for
+     * its ply, so it costs about the same as the move
+     */
+    public void undoMove(){
+        if(ply == 0){
+            throw new IllegalStateException("There Is No Move To Undo");
         }
+        if(checkMate){
+            // the turn stayed with the winner, it goes back to the normal state of a move first
+            turn++;
+            currentPlayer = opponent(currentPlayer);
+        }
+        ply--;
+        int move = plyMoves[ply];
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flags = Move.flags(move);
+        long changed = Bitboards.bit(from) | Bitboards.bit(to);
 
-        // special move: small castling
-        if(p instanceof King && target.getColumn() == source.getColumn() + 2){
-            Position sourceR = new Position (source.getRow(), source.getColumn() + 3);
-            Position targetR = new Position (source.getRow(), source.getColumn() + 1);
-            ChessPiece rook = (ChessPiece)board.removePiece(targetR);
-            board.placePiece(rook, sourceR);
+        if((flags & Move.CASTLING) != 0){
+            int sourceR = (to > from) ? from + 3 : from - 4;
+            int targetR = (to > from) ? from + 1 : from - 1;
+            ChessPiece rook = takePiece(targetR);
+            putPiece(rook, sourceR);
             rook.decreaseMoveCount();
+            changed |= Bitboards.bit(sourceR) | Bitboards.bit(targetR);
         }
 
-        // special move: big castling
-        if(p instanceof King && target.getColumn() == source.getColumn() - 2){
-            Position sourceR = new Position (source.getRow(), source.getColumn() - 4);
-            Position targetR = new Position (source.getRow(), source.getColumn() - 1);
-            ChessPiece rook = (ChessPiece)board.removePiece(targetR);
-            board.placePiece(rook, sourceR);
-            rook.decreaseMoveCount();
+        ChessPiece p = takePiece(to);
+        if(plyPawns[ply] != null){
+            p = plyPawns[ply];
+            plyPawns[ply] = null;
         }
+        p.decreaseMoveCount();
+        putPiece(p, from);
 
-        // special move: passant
-        if(p instanceof Pawn){
-            if(source.getColumn() != target.getColumn() && capturedPiece == enPassantVulnerable){
-                ChessPiece pawn = (ChessPiece)board.removePiece(target);
-                Position pawnPosition;
-                if(p.getColor() == ColorChess.WHITE){
-                    pawnPosition = new Position(3, target.getColumn());
-                } else{
-                    pawnPosition = new Position(4, target.getColumn());
-                }
-                board.placePiece(pawn, pawnPosition);
-            }
+        ChessPiece captured = plyCaptured[ply];
+        if(captured != null){
+            int capturedSquare = ((flags & Move.EN_PASSANT) != 0) ? (from & ~7) | (to & 7) : to;
+            putPiece(captured, capturedSquare);
+            capturedPieces.remove(capturedPieces.size() - 1);
+            changed |= Bitboards.bit(capturedSquare);
+            plyCaptured[ply] = null;
         }
+
+        attacks.update(changed);
+        turn--;
+        currentPlayer = opponent(currentPlayer);
+        enPassantVulnerable = plyEnPassant[ply];
+        plyEnPassant[ply] = null;
+        promoted = plyPromoted[ply];
+        plyPromoted[ply] = null;
+        checkMate = plyCheckMate[ply];
+        check = plyCheck[ply];
+        halfmoveClock = plyHalfmove[ply];
+        hash = plyHash[ply];
+        hashedCastling = plyHashedState[ply] >>> 4;
+        hashedEnPassantFile = ((plyHashedState[ply] & 15) == 15) ? -1 : plyHashedState[ply] & 15;
+    }
+
+    private void growPlies(){
+        int size = plyMoves.length * 2;
+        plyMoves = Arrays.copyOf(plyMoves, size);
+        plyCaptured = Arrays.copyOf(plyCaptured, size);
+        plyPawns = Arrays.copyOf(plyPawns, size);
+        plyEnPassant = Arrays.copyOf(plyEnPassant, size);
+        plyCheck = Arrays.copyOf(plyCheck, size);
+        plyHash = Arrays.copyOf(plyHash, size);
+        plyHashedState = Arrays.copyOf(plyHashedState, size);
+        plyHalfmove = Arrays.copyOf(plyHalfmove, size);
+        plyPromoted = Arrays.copyOf(plyPromoted, size);
+        plyCheckMate = Arrays.copyOf(plyCheckMate, size);
     }
 
     // incrementing the turn and changing the current player color
     private void nextTurn(){
         turn++;
         currentPlayer = (currentPlayer == ColorChess.WHITE) ? ColorChess.BLACK : ColorChess.WHITE;
+        hash ^= Zobrist.side();
+    }
+
+    // XOR out the castling rights and passant file that are in the hash and XOR in the current ones
+    private void updateStateHash(){
+        int castling = castlingRights();
+        if(castling != hashedCastling){
+            hash ^= Zobrist.castling(castling ^ hashedCastling);
+            hashedCastling = castling;
+        }
+        int file = enPassantFile();
+        if(file != hashedEnPassantFile){
+            hash ^= Zobrist.enPassant(hashedEnPassantFile) ^ Zobrist.enPassant(file);
+            hashedEnPassantFile = file;
+        }
+    }
+
+    // the rights are lost as soon as the king or the rook moves (or the rook is captured)
+    private int castlingRights(){
+        int rights = 0;
+        if(isUnmoved(60, PieceType.KING, ColorChess.WHITE)){
+            if(isUnmoved(63, PieceType.ROOK, ColorChess.WHITE)){
+                rights |= Zobrist.WHITE_KING_SIDE;
+            }
+            if(isUnmoved(56, PieceType.ROOK, ColorChess.WHITE)){
+                rights |= Zobrist.WHITE_QUEEN_SIDE;
+            }
+        }
+        if(isUnmoved(4, PieceType.KING, ColorChess.BLACK)){
+            if(isUnmoved(7, PieceType.ROOK, ColorChess.BLACK)){
+                rights |= Zobrist.BLACK_KING_SIDE;
+            }
+            if(isUnmoved(0, PieceType.ROOK, ColorChess.BLACK)){
+                rights |= Zobrist.BLACK_QUEEN_SIDE;
+            }
+        }
+        return rights;
+    }
+
+    private boolean isUnmoved(int square, PieceType type, ColorChess color){
+        ChessPiece p = (ChessPiece)board.piece(square);
+        return p != null && p.getType() == type && p.getColor() == color && p.getMoveCount() == 0;
+    }
+
+    // file of the pawn that can be taken in passant, only if an opponent pawn is beside it (-1 if none)
+    private int enPassantFile(){
+        if(enPassantVulnerable == null || enPassantVulnerable.getSquare() < 0){
+            return -1;
+        }
+        int square = enPassantVulnerable.getSquare();
+        long beside = ((Bitboards.bit(square) << 1) & ~Bitboards.FILE_A) | ((Bitboards.bit(square) >>> 1) & ~Bitboards.FILE_H);
+        if((beside & Bitboards.pieces(board, opponent(enPassantVulnerable.getColor()), PieceType.PAWN)) == 0){
+            return -1;
+        }
+        return square & 7;
     }
 
     private ColorChess opponent(ColorChess color){
@@ -284,57 +780,411 @@ public class ChessMatch {
     }
 
     private ChessPiece king(ColorChess color){
-        List<Piece> list = piecesOnTheBoard.stream().filter(x -> ((ChessPiece)x).getColor() == color).collect(Collectors.toList());
-        for(Piece p: list){
-            if(p instanceof King){
-                return (ChessPiece)p;
-            }
+        if(piecesOnTheBoard.count(color, PieceType.KING) == 0){
+            throw new IllegalStateException("There is no " + color + " king on the board");
         }
-        throw new IllegalStateException("There is no " + color + " king on the board");
+        return (ChessPiece)board.piece(piecesOnTheBoard.kingSquare(color));
     }
 
     private boolean testCheck(ColorChess color){
-        // getting the king position on matrix format
-        Position kingPosition = king(color).getChessPosition().toPosition();
-        List<Piece> opponentPieces = piecesOnTheBoard.stream().filter(x -> ((ChessPiece)x).getColor() == opponent(color)).collect(Collectors.toList());
-        // looping to make sure that any opponent piece don't have one possible move that is equal to the king position.
-        for(Piece p: opponentPieces){
-            boolean[][] mat = p.possibleMoves();
-            if(mat[kingPosition.getRow()][kingPosition.getColumn()]){
-                return true;
+        // the attack map already knows every square the opponent attacks
+        return attacks.isAttacked(king(color).getSquare(), opponent(color));
+    }
+
+    private boolean testCheckMate(ColorChess color){
+        // in check and without any legal move
+        return testCheck(color) && moveGenerator.legalMoves(color, moveBuffer) == 0;
+    }
+
+    // the legal move from source to target (promoting to a queen), Move.NONE when there is none
+    private int legalMove(int source, int target){
+        int count = moveGenerator.legalMoves(currentPlayer, moveBuffer);
+        for(int i = 0; i < count; i++){
+            int move = moveBuffer[i];
+            if(Move.from(move) == source && Move.to(move) == target
+                && (Move.promotion(move) == 0 || Move.promotionType(move) == PieceType.QUEEN)){
+                return move;
             }
         }
-        return false;
+        return Move.NONE;
     }
 
-    private boolean testCheckMate(ColorChess color){
-        if(!testCheck(color)){
-            return false;
-        }
-        List<Piece> list = piecesOnTheBoard.stream().filter(x -> ((ChessPiece)x).getColor() == color).collect(Collectors.toList());
-        for(Piece p : list){
-            boolean[][] mat = p.possibleMoves();
-            for(int i = 0; i < board.getRow(); i++){
-                for(int j = 0; j < board.getColumn(); j++){
-                    if(mat[i][j]){
-                        Position source = ((ChessPiece)p).getChessPosition().toPosition();
-                        Position target = new Position(i, j);
-                        Piece capturedPiece = makeMove(source, target);
-                        boolean testCheckTemp = testCheck(color);
-                        undoMove(source, target, capturedPiece);
-                        if(!testCheckTemp){
-                            return false;
-                        }
+    /**
+     * Replaces the position of this match with a FEN (or EPD, the fields after the passant square
+     * are optional) position. The string is read char by char and the pieces of the old position are
+     * reused, so loading many positions in the same match doesn't create garbage.
+     * The castling rights and the passant square become the move counts the pieces already use.
+     */
+    public void loadFen(CharSequence fen){
+        int length = fen.length();
+        int i = 0;
+
+        // 1. pieces, from the 8th row to the 1st one
+        Arrays.fill(fenKinds, 0);
+        Arrays.fill(fenBitboards, 0L);
+        int square = 0;
+        int column = 0;
+        int whiteKings = 0;
+        int blackKings = 0;
+        for(; i < length && fen.charAt(i) != ' '; i++){
+            char c = fen.charAt(i);
+            if(c == '/'){
+                if(column != 8 || square == 64){
+                    throw invalidFen(fen, "row without 8 squares");
+                }
+                column = 0;
+            } else if(c >= '1' && c <= '8'){
+                column += c - '0';
+                square += c - '0';
+                if(column > 8){
+                    throw invalidFen(fen, "row with more than 8 squares");
+                }
+            } else{
+                int kind = fenKind(c);
+                if(kind < 0){
+                    throw invalidFen(fen, "unexpected '" + c + "' in the pieces");
+                }
+                if(column++ == 8){
+                    throw invalidFen(fen, "row with more than 8 squares");
+                }
+                if(kind % 6 == PieceType.PAWN.ordinal() && (square < 8 || square >= 56)){
+                    throw invalidFen(fen, "pawn on the first or last row");
+                }
+                if(kind == ChessPiece.kind(ColorChess.WHITE, PieceType.KING)){
+                    whiteKings++;
+                } else if(kind == ChessPiece.kind(ColorChess.BLACK, PieceType.KING)){
+                    blackKings++;
+                }
+                fenBitboards[kind] |= Bitboards.bit(square);
+                fenKinds[square++] = kind + 1;
+            }
+        }
+        if(square != 64 || column != 8){
+            throw invalidFen(fen, "the pieces don't fill the 64 squares");
+        }
+        if(whiteKings != 1 || blackKings != 1){
+            throw invalidFen(fen, "each player needs one king");
+        }
+        // each piece over the ones of the initial position is a promoted pawn, so a player has at most 16
+        // pieces and 10 of a kind (the most PieceRegistry holds, and still true after any promotion)
+        for(ColorChess color : COLORS){
+            if(Long.bitCount(fenBitboards[ChessPiece.kind(color, PieceType.PAWN)]) + promotedPieces(color) > 8){
+                throw invalidFen(fen, "more " + color + " pieces than pawns that could have been promoted");
+            }
+        }
+
+        // 2. player to move
+        i = skipSpaces(fen, i);
+        if(i >= length || (fen.charAt(i) != 'w' && fen.charAt(i) != 'b')){
+            throw invalidFen(fen, "the player to move must be w or b");
+        }
+        ColorChess player = (fen.charAt(i++) == 'w') ? ColorChess.WHITE : ColorChess.BLACK;
+
+        // 3. castling rights
+        i = skipSpaces(fen, i);
+        int castling = 0;
+        if(i < length && fen.charAt(i) == '-'){
+            i++;
+        } else{
+            if(i >= length){
+                throw invalidFen(fen, "missing castling rights");
+            }
+            for(; i < length && fen.charAt(i) != ' '; i++){
+                switch(fen.charAt(i)){
+                    case 'K': castling |= Zobrist.WHITE_KING_SIDE; break;
+                    case 'Q': castling |= Zobrist.WHITE_QUEEN_SIDE; break;
+                    case 'k': castling |= Zobrist.BLACK_KING_SIDE; break;
+                    case 'q': castling |= Zobrist.BLACK_QUEEN_SIDE; break;
+                    default: throw invalidFen(fen, "unexpected '" + fen.charAt(i) + "' in the castling rights");
+                }
+            }
+        }
+        if(!castlingPiecesInPlace(castling, ColorChess.WHITE, 60, 63, 56, Zobrist.WHITE_KING_SIDE, Zobrist.WHITE_QUEEN_SIDE)
+            || !castlingPiecesInPlace(castling, ColorChess.BLACK, 4, 7, 0, Zobrist.BLACK_KING_SIDE, Zobrist.BLACK_QUEEN_SIDE)){
+            throw invalidFen(fen, "castling right without the king and the rook on their squares");
+        }
+
+        // 4. passant target square (behind the pawn that moved two squares)
+        i = skipSpaces(fen, i);
+        int enPassantPawn = -1;
+        if(i < length && fen.charAt(i) == '-'){
+            i++;
+        } else if(i + 1 < length && fen.charAt(i) >= 'a' && fen.charAt(i) <= 'h' && (fen.charAt(i + 1) == '3' || fen.charAt(i + 1) == '6')){
+            int target = (8 - (fen.charAt(i + 1) - '0')) * 8 + (fen.charAt(i) - 'a');
+            ColorChess moved = (fen.charAt(i + 1) == '3') ? ColorChess.WHITE : ColorChess.BLACK;
+            enPassantPawn = (moved == ColorChess.WHITE) ? target - 8 : target + 8;
+            int origin = (moved == ColorChess.WHITE) ? target + 8 : target - 8;
+            if(moved == player || fenKinds[enPassantPawn] != ChessPiece.kind(moved, PieceType.PAWN) + 1
+                || fenKinds[target] != 0 || fenKinds[origin] != 0){
+                throw invalidFen(fen, "no pawn can be taken in passant there");
+            }
+            i += 2;
+        } else{
+            throw invalidFen(fen, "wrong passant square");
+        }
+
+        // 5. and 6. counters, missing in EPD (which may have operations after the 4th field instead)
+        i = skipSpaces(fen, i);
+        int halfmove = 0;
+        int fullmove = 1;
+        if(i < length && isDigit(fen.charAt(i))){
+            halfmove = 0;
+            for(; i < length && isDigit(fen.charAt(i)); i++){
+                halfmove = halfmove * 10 + (fen.charAt(i) - '0');
+            }
+            i = skipSpaces(fen, i);
+            if(i < length && isDigit(fen.charAt(i))){
+                fullmove = 0;
+                for(; i < length && isDigit(fen.charAt(i)); i++){
+                    fullmove = fullmove * 10 + (fen.charAt(i) - '0');
+                }
+            }
+            if(fullmove > 100000 || halfmove > 100000){
+                throw invalidFen(fen, "wrong move counters");
+            }
+            // some tools write 0 as the first move number
+            fullmove = Math.max(fullmove, 1);
+        }
+
+        // the king of the player that just moved can't be in check
+        ColorChess other = opponent(player);
+        int otherKing = Long.numberOfTrailingZeros(fenBitboards[ChessPiece.kind(other, PieceType.KING)]);
+        long occupied = 0L;
+        for(long b : fenBitboards){
+            occupied |= b;
+        }
+        if(Bitboards.attackers(fenBitboards, otherKing, player, occupied) != 0){
+            throw invalidFen(fen, "the player that is not to move is in check");
+        }
+
+        // the FEN is valid: the old position goes away and the new one is placed
+        placePosition(player, castling, enPassantPawn, halfmove, fullmove);
+    }
+
+    /**
+     * @return an immutable copy of the position that any thread can use (see PositionSnapshot)
+     */
+    public PositionSnapshot snapshot(){
+        // a checkmated match keeps the turn, and the side in the hash, with the winner: both go back to the mated player
+        ColorChess player = checkMate ? opponent(currentPlayer) : currentPlayer;
+        long positionHash = checkMate ? hash ^ Zobrist.side() : hash;
+        int enPassantFile = (enPassantVulnerable != null && enPassantVulnerable.getSquare() >= 0) ? enPassantVulnerable.getSquare() & 7 : -1;
+        return new PositionSnapshot(packedSquares, player, castlingRights(), enPassantFile, halfmoveClock, getFullmoveNumber(), positionHash);
+    }
+
+    /**
+     * Replaces the position with the one of the snapshot, reusing the pieces like loadFen.
+     * The moves made before are forgotten.
+     */
+    public void loadSnapshot(PositionSnapshot snapshot){
+        for(int square = 0; square < 64; square++){
+            fenKinds[square] = snapshot.getKind(square) + 1;
+        }
+        int file = snapshot.getEnPassantFile();
+        int enPassantPawn = (file < 0) ? -1 : ((snapshot.getPlayer() == ColorChess.WHITE) ? 24 : 32) + file;
+        placePosition(snapshot.getPlayer(), snapshot.getCastlingRights(), enPassantPawn,
+            snapshot.getHalfmoveClock(), snapshot.getFullmoveNumber());
+    }
+
+    // puts the pieces of fenKinds on the board, with the rest of the state (already validated)
+    private void placePosition(ColorChess player, int castling, int enPassantPawn, int halfmove, int fullmove){
+        clearPosition();
+        for(int square = 0; square < 64; square++){
+            if(fenKinds[square] != 0){
+                int kind = fenKinds[square] - 1;
+                ChessPiece p = sparePiece(kind);
+                p.setMoveCount(fenMoveCount(kind, square, castling));
+                putPiece(p, square);
+            }
+        }
+        currentPlayer = player;
+        turn = 2 * fullmove - 1 + ((player == ColorChess.BLACK) ? 1 : 0);
+        halfmoveClock = halfmove;
+        enPassantVulnerable = (enPassantPawn >= 0) ? (ChessPiece)board.piece(enPassantPawn) : null;
+        if(player == ColorChess.BLACK){
+            hash ^= Zobrist.side();
+        }
+        attacks.rebuild();
+        updateStateHash();
+
+        check = testCheck(player);
+        if(testCheckMate(player)){
+            // the same state performChessMovie leaves: the turn stays with the winner
+            checkMate = true;
+            turn--;
+            currentPlayer = opponent(player);
+            hash ^= Zobrist.side();
+        }
+    }
+
+    /**
+     * @return the position in FEN
+     */
+    public String toFen(){
+        StringBuilder sb = new StringBuilder(90);
+        appendFen(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Writes the FEN of the position at the end of a (reusable) StringBuilder
+     */
+    public void appendFen(StringBuilder sb){
+        for(int row = 0; row < 8; row++){
+            int empty = 0;
+            for(int column = 0; column < 8; column++){
+                ChessPiece p = (ChessPiece)board.piece(row * 8 + column);
+                if(p == null){
+                    empty++;
+                } else{
+                    if(empty > 0){
+                        sb.append((char)('0' + empty));
+                        empty = 0;
                     }
-                }   
+                    char letter = FEN_LETTERS[p.getType().ordinal()];
+                    sb.append((p.getColor() == ColorChess.WHITE) ? Character.toUpperCase(letter) : letter);
+                }
+            }
+            if(empty > 0){
+                sb.append((char)('0' + empty));
+            }
+            if(row < 7){
+                sb.append('/');
+            }
+        }
+
+        ColorChess player = checkMate ? opponent(currentPlayer) : currentPlayer;
+        sb.append(' ').append((player == ColorChess.WHITE) ? 'w' : 'b').append(' ');
+
+        int castling = castlingRights();
+        if(castling == 0){
+            sb.append('-');
+        } else{
+            if((castling & Zobrist.WHITE_KING_SIDE) != 0) sb.append('K');
+            if((castling & Zobrist.WHITE_QUEEN_SIDE) != 0) sb.append('Q');
+            if((castling & Zobrist.BLACK_KING_SIDE) != 0) sb.append('k');
+            if((castling & Zobrist.BLACK_QUEEN_SIDE) != 0) sb.append('q');
+        }
+        sb.append(' ');
+
+        if(enPassantVulnerable != null && enPassantVulnerable.getSquare() >= 0){
+            int pawn = enPassantVulnerable.getSquare();
+            int target = (enPassantVulnerable.getColor() == ColorChess.WHITE) ? pawn + 8 : pawn - 8;
+            sb.append((char)('a' + (target & 7))).append((char)('0' + 8 - (target >>> 3)));
+        } else{
+            sb.append('-');
+        }
+        sb.append(' ').append(halfmoveClock).append(' ').append(getFullmoveNumber());
+    }
+
+    // takes every piece off and forgets the moves, keeping the pieces to be used again
+    private void clearPosition(){
+        long occupied = board.getOccupied();
+        while(occupied != 0){
+            ChessPiece p = takePiece(Long.numberOfTrailingZeros(occupied));
+            int kind = p.getKind();
+            if(spareCount[kind] < sparePieces[kind].length){
+                sparePieces[kind][spareCount[kind]++] = p;
             }
+            occupied &= occupied - 1;
         }
-        return true;
+        Arrays.fill(plyCaptured, 0, ply, null);
+        Arrays.fill(plyPawns, 0, ply, null);
+        Arrays.fill(plyEnPassant, 0, ply, null);
+        Arrays.fill(plyPromoted, 0, ply, null);
+        ply = 0;
+        lastPly = 0;
+        earlierHashes = new long[0];
+        capturedPieces.clear();
+        enPassantVulnerable = null;
+        promoted = null;
+        check = false;
+        checkMate = false;
+        hash = 0L;
+        hashedCastling = 0;
+        hashedEnPassantFile = -1;
+    }
+
+    private ChessPiece sparePiece(int kind){
+        if(spareCount[kind] > 0){
+            return sparePieces[kind][--spareCount[kind]];
+        }
+        return newPiece(TYPES[kind % 6], (kind < 6) ? ColorChess.BLACK : ColorChess.WHITE);
+    }
+
+    // 0 keeps castling and the pawn double move possible, 1 means the piece already moved
+    private int fenMoveCount(int kind, int square, int castling){
+        ColorChess color = (kind < 6) ? ColorChess.BLACK : ColorChess.WHITE;
+        switch(TYPES[kind % 6]){
+            case PAWN:
+                return (square >>> 3) == ((color == ColorChess.WHITE) ? 6 : 1) ? 0 : 1;
+            case KING:
+                if(color == ColorChess.WHITE){
+                    return (square == 60 && (castling & (Zobrist.WHITE_KING_SIDE | Zobrist.WHITE_QUEEN_SIDE)) != 0) ? 0 : 1;
+                }
+                return (square == 4 && (castling & (Zobrist.BLACK_KING_SIDE | Zobrist.BLACK_QUEEN_SIDE)) != 0) ? 0 : 1;
+            case ROOK:
+                if((square == 63 && (castling & Zobrist.WHITE_KING_SIDE) != 0) || (square == 56 && (castling & Zobrist.WHITE_QUEEN_SIDE) != 0)
+                    || (square == 7 && (castling & Zobrist.BLACK_KING_SIDE) != 0) || (square == 0 && (castling & Zobrist.BLACK_QUEEN_SIDE) != 0)){
+                    return 0;
+                }
+                return 1;
+            default:
+                return 1;
+        }
+    }
+
+    private boolean castlingPiecesInPlace(int castling, ColorChess color, int king, int kingRook, int queenRook, int kingSide, int queenSide){
+        if((castling & (kingSide | queenSide)) == 0){
+            return true;
+        }
+        int rook = ChessPiece.kind(color, PieceType.ROOK) + 1;
+        return fenKinds[king] == ChessPiece.kind(color, PieceType.KING) + 1
+            && ((castling & kingSide) == 0 || fenKinds[kingRook] == rook)
+            && ((castling & queenSide) == 0 || fenKinds[queenRook] == rook);
+    }
+
+    // pieces of the FEN position over the 2 knights, bishops and rooks and the queen of the initial position
+    private int promotedPieces(ColorChess color){
+        int promoted = 0;
+        for(PieceType type : TYPES){
+            int initial = (type == PieceType.QUEEN) ? 1 : 2;
+            if(type != PieceType.PAWN && type != PieceType.KING){
+                promoted += Math.max(0, Long.bitCount(fenBitboards[ChessPiece.kind(color, type)]) - initial);
+            }
+        }
+        return promoted;
+    }
+
+    private static int fenKind(char c){
+        for(int type = 0; type < FEN_LETTERS.length; type++){
+            if(c == FEN_LETTERS[type]){
+                return ChessPiece.kind(ColorChess.BLACK, TYPES[type]);
+            }
+            if(c == Character.toUpperCase(FEN_LETTERS[type])){
+                return ChessPiece.kind(ColorChess.WHITE, TYPES[type]);
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(CharSequence fen, int i){
+        while(i < fen.length() && fen.charAt(i) == ' '){
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(char c){
+        return c >= '0' && c <= '9';
+    }
+
+    private static ChessException invalidFen(CharSequence fen, String reason){
+        return new ChessException("Invalid FEN (" + reason + "): " + fen);
     }
 
     private void placeNewPiece(char column, int row, ChessPiece piece){
-        board.placePiece(piece, new ChessPosition(column, row).toPosition());
-        piecesOnTheBoard.add(piece);
+        putPiece(piece, new ChessPosition(column, row).toPosition());
     }
 
     private void initialSetup(){
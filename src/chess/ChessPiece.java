@@ -5,6 +5,8 @@ import board.Piece;
 import board.Position;
 
 public abstract class ChessPiece extends Piece{
+    private static final int TYPES = PieceType.values().length;
+
     private ColorChess color;
     private int moveCount;
 
@@ -21,6 +23,18 @@ public abstract class ChessPiece extends Piece{
         return this.moveCount;
     }
 
+    public abstract PieceType getType();
+
+    @Override
+    public int getKind(){
+        return kind(color, getType());
+    }
+
+    // bitboard index of one color and piece type
+    public static int kind(ColorChess color, PieceType type){
+        return color.ordinal() * TYPES + type.ordinal();
+    }
+
     /**
      * @method to increase and decrease movements to allow some special moves
      */
@@ -32,6 +46,11 @@ public abstract class ChessPiece extends Piece{
         this.moveCount--;
     }
 
+    // used when a piece is copied or loaded in the middle of a game
+    void setMoveCount(int moveCount){
+        this.moveCount = moveCount;
+    }
+
     public ChessPosition getChessPosition(){
         return ChessPosition.fromPosition(position);
     }
@@ -41,4 +60,30 @@ public abstract class ChessPiece extends Piece{
         ChessPiece p = (ChessPiece) getBoard().piece(position);
         return p != null && p.getColor() != color;
     }
+
+    /**
+     * Writes the moves of this piece (packed, see Move) into the buffer
+     * @param moves reusable buffer
+     * @param count number of moves already in the buffer
+     * @return the new number of moves in the buffer
+     */
+    public int possibleMoves(int[] moves, int count){
+        long targets = possibleMovesBitboard();
+        long occupied = getBoard().getOccupied();
+        while(targets != 0){
+            int target = Long.numberOfTrailingZeros(targets);
+            int flags = ((occupied & Bitboards.bit(target)) != 0) ? Move.CAPTURE : 0;
+            moves[count++] = Move.of(square, target, flags, 0);
+            targets &= targets - 1;
+        }
+        return count;
+    }
+
+    protected long ownPieces(){
+        return Bitboards.pieces(getBoard(), color);
+    }
+
+    protected long opponentPieces(){
+        return getBoard().getOccupied() & ~ownPieces();
+    }
 }
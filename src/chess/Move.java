@@ -0,0 +1,66 @@
+package chess;
+
+/**
+ * Moves packed in one int, so move lists are plain int[] buffers:
+ * bits 0-5 source square, 6-11 target square, 12-15 flags, 16-18 promotion (PieceType ordinal, 0 = none)
+ */
+public final class Move {
+    // a legal position never has more than 218 moves
+    public static final int MAX_MOVES = 256;
+
+    public static final int NONE = 0;
+
+    public static final int CAPTURE = 1;
+    public static final int DOUBLE_PUSH = 2;
+    public static final int EN_PASSANT = 4;
+    public static final int CASTLING = 8;
+
+    private static final PieceType[] TYPES = PieceType.values();
+
+    private Move(){}
+
+    public static int of(int from, int to, int flags, int promotion){
+        return from | (to << 6) | (flags << 12) | (promotion << 16);
+    }
+
+    public static int from(int move){
+        return move & 63;
+    }
+
+    public static int to(int move){
+        return (move >>> 6) & 63;
+    }
+
+    public static int flags(int move){
+        return (move >>> 12) & 15;
+    }
+
+    public static int promotion(int move){
+        return (move >>> 16) & 7;
+    }
+
+    public static boolean isCapture(int move){
+        return (move & ((CAPTURE | EN_PASSANT) << 12)) != 0;
+    }
+
+    public static PieceType promotionType(int move){
+        int promotion = promotion(move);
+        return (promotion == 0) ? null : TYPES[promotion];
+    }
+
+    public static String squareName(int square){
+        return "" + (char)('a' + (square & 7)) + (8 - (square >>> 3));
+    }
+
+    // coordinate notation, like e2e4 or e7e8q
+    public static String toString(int move){
+        String s = squareName(from(move)) + squareName(to(move));
+        switch(promotion(move)){
+            case 1: return s + "n";
+            case 2: return s + "b";
+            case 3: return s + "r";
+            case 4: return s + "q";
+            default: return s;
+        }
+    }
+}
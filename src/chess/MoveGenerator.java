@@ -0,0 +1,140 @@
+package chess;
+
+import board.Board;
+
+/**
+ * Generates only legal moves, without trying them on the board.
+ * The pseudo-legal moves of each piece are filtered with the checkers of the king,
+ * the squares that block or capture a single checker and the pin ray of pinned pieces.
+ */
+class MoveGenerator {
+    private Board board;
+    private AttackMap attacks;
+
+    // ray that a pinned piece (by square) can't leave: from the king to the pinner, pinner included
+    private long[] pinRays = new long[64];
+
+    public MoveGenerator(Board board, AttackMap attacks){
+        this.board = board;
+        this.attacks = attacks;
+    }
+
+    /**
+     * Writes the legal moves of one color (packed, see Move) into the buffer
+     * @return number of moves written
+     */
+    public int legalMoves(ColorChess color, int[] moves){
+        return generate(color, moves, false);
+    }
+
+    /**
+     * Same as legalMoves(color, moves) != 0, stopping at the first piece with a legal move
+     * (usually the king), for the stalemate and checkmate tests
+     */
+    public boolean hasLegalMove(ColorChess color, int[] moves){
+        return generate(color, moves, true) != 0;
+    }
+
+    private int generate(ColorChess color, int[] moves, boolean stopAtFirst){
+        ColorChess opponent = (color == ColorChess.WHITE) ? ColorChess.BLACK : ColorChess.WHITE;
+        long occupied = board.getOccupied();
+        long own = Bitboards.pieces(board, color);
+        int king = Long.numberOfTrailingZeros(Bitboards.pieces(board, color, PieceType.KING));
+        long checkers = Bitboards.attackers(board, king, opponent, occupied);
+        long opponentQueens = Bitboards.pieces(board, opponent, PieceType.QUEEN);
+        long opponentRooks = Bitboards.pieces(board, opponent, PieceType.ROOK) | opponentQueens;
+        long opponentBishops = Bitboards.pieces(board, opponent, PieceType.BISHOP) | opponentQueens;
+
+        int count = kingMoves((ChessPiece)board.piece(king), opponent, checkers, (opponentRooks | opponentBishops) & checkers, moves);
+
+        // double check: only the king can move
+        if(Long.bitCount(checkers) > 1 || (stopAtFirst && count != 0)){
+            return count;
+        }
+
+        // with one checker the other pieces must capture it or block the line
+        long checkMask = -1L;
+        if(checkers != 0){
+            int checker = Long.numberOfTrailingZeros(checkers);
+            checkMask = checkers | Bitboards.between(king, checker);
+        }
+
+        // pinned pieces: a single own piece between the king and an opponent slider
+        long pinned = 0L;
+        long snipers = (Bitboards.rookAttacks(king, 0L) & opponentRooks) | (Bitboards.bishopAttacks(king, 0L) & opponentBishops);
+        while(snipers != 0){
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            long blockers = Bitboards.between(king, sniper) & occupied;
+            if(blockers != 0 && (blockers & (blockers - 1)) == 0 && (blockers & own) != 0){
+                pinned |= blockers;
+                pinRays[Long.numberOfTrailingZeros(blockers)] = Bitboards.between(king, sniper) | Bitboards.bit(sniper);
+            }
+            snipers &= snipers - 1;
+        }
+
+        long pieces = own & ~Bitboards.bit(king);
+        while(pieces != 0){
+            int square = Long.numberOfTrailingZeros(pieces);
+            long allowed = checkMask;
+            if((pinned & Bitboards.bit(square)) != 0){
+                allowed &= pinRays[square];
+            }
+
+            int first = count;
+            int last = ((ChessPiece)board.piece(square)).possibleMoves(moves, first);
+            for(int i = first; i < last; i++){
+                int move = moves[i];
+                boolean legal;
+                if((Move.flags(move) & Move.EN_PASSANT) != 0){
+                    legal = enPassantIsLegal(move, king, opponent, occupied);
+                } else{
+                    legal = (allowed & Bitboards.bit(Move.to(move))) != 0;
+                }
+                if(legal){
+                    moves[count++] = move;
+                }
+            }
+            if(stopAtFirst && count != 0){
+                return count;
+            }
+            pieces &= pieces - 1;
+        }
+        return count;
+    }
+
+    private int kingMoves(ChessPiece king, ColorChess opponent, long checkers, long sliderCheckers, int[] moves){
+        int square = king.getSquare();
+        int last = king.possibleMoves(moves, 0);
+        int count = 0;
+        for(int i = 0; i < last; i++){
+            int move = moves[i];
+            int target = Move.to(move);
+            boolean legal;
+            if((Move.flags(move) & Move.CASTLING) != 0){
+                // special move: castling (not out of, through or into check)
+                int transit = (square + target) / 2;
+                legal = checkers == 0 && !attacks.isAttacked(transit, opponent) && !attacks.isAttacked(target, opponent);
+            } else if(attacks.isAttacked(target, opponent)){
+                legal = false;
+            } else if(sliderCheckers != 0){
+                // the king can't step back along the line of a slider that is checking it
+                legal = Bitboards.attackers(board, target, opponent, board.getOccupied() ^ Bitboards.bit(square)) == 0;
+            } else{
+                legal = true;
+            }
+            if(legal){
+                moves[count++] = move;
+            }
+        }
+        return count;
+    }
+
+    // the passant removes two pieces from one line, so it is tested on the resulting occupancy
+    private boolean enPassantIsLegal(int move, int king, ColorChess opponent, long occupied){
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int captured = (from & ~7) | (to & 7);
+        long after = occupied ^ Bitboards.bit(from) ^ Bitboards.bit(to) ^ Bitboards.bit(captured);
+        return (Bitboards.attackers(board, king, opponent, after) & ~Bitboards.bit(captured)) == 0;
+    }
+}
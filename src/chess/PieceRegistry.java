@@ -0,0 +1,40 @@
+package chess;
+
+/**
+ * Squares of the pieces on the board, by color and type (one list per kind, see ChessPiece.kind).
+ * Adding and removing is O(1): each square remembers its index inside the list of its kind.
+ */
+class PieceRegistry {
+    // two of a kind + eight promoted pawns
+    private static final int MAX_PER_KIND = 10;
+    private static final int KINDS = ColorChess.values().length * PieceType.values().length;
+
+    private int[][] squares = new int[KINDS][MAX_PER_KIND];
+    private int[] counts = new int[KINDS];
+    private int[] indexes = new int[64];
+
+    public void add(int kind, int square){
+        indexes[square] = counts[kind];
+        squares[kind][counts[kind]++] = square;
+    }
+
+    public void remove(int kind, int square){
+        // the last square of the list takes the place of the removed one
+        int index = indexes[square];
+        int last = squares[kind][--counts[kind]];
+        squares[kind][index] = last;
+        indexes[last] = index;
+    }
+
+    public int count(ColorChess color, PieceType type){
+        return counts[ChessPiece.kind(color, type)];
+    }
+
+    public int square(ColorChess color, PieceType type, int index){
+        return squares[ChessPiece.kind(color, type)][index];
+    }
+
+    public int kingSquare(ColorChess color){
+        return squares[ChessPiece.kind(color, PieceType.KING)][0];
+    }
+}
@@ -0,0 +1,153 @@
+package chess;
+
+/**
+ * Piece values and piece-square tables of the evaluation, one set for the middlegame and one for the
+ * endgame. The tables are written from the 8th row down, from the white side, so a white piece on
+ * square s reads table[s] and a black piece reads the mirrored square (s ^ 56).
+ * ChessMatch adds or subtracts one entry every time a piece is put on or taken from the board.
+ */
+public final class PieceSquareTables {
+    // phase of the game: the weight of the pieces left (24 at the start, 0 with only kings and pawns)
+    public static final int MAX_PHASE = 24;
+
+    private static final int[] MIDDLEGAME_VALUES = {82, 337, 365, 477, 1025, 0};
+    private static final int[] ENDGAME_VALUES = {94, 281, 297, 512, 936, 0};
+    private static final int[] PHASE = {0, 1, 1, 2, 4, 0};
+
+    private static final int[][] MIDDLEGAME = {
+        // pawn
+        {
+              0,   0,   0,   0,   0,   0,   0,   0,
+             50,  50,  50,  50,  50,  50,  50,  50,
+             10,  10,  20,  30,  30,  20,  10,  10,
+              5,   5,  10,  25,  25,  10,   5,   5,
+              0,   0,   0,  20,  20,   0,   0,   0,
+              5,  -5, -10,   0,   0, -10,  -5,   5,
+              5,  10,  10, -20, -20,  10,  10,   5,
+              0,   0,   0,   0,   0,   0,   0,   0
+        },
+        // knight
+        {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20,   0,   0,   0,   0, -20, -40,
+            -30,   0,  10,  15,  15,  10,   0, -30,
+            -30,   5,  15,  20,  20,  15,   5, -30,
+            -30,   0,  15,  20,  20,  15,   0, -30,
+            -30,   5,  10,  15,  15,  10,   5, -30,
+            -40, -20,   0,   5,   5,   0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+        },
+        // bishop
+        {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   5,   5,  10,  10,   5,   5, -10,
+            -10,   0,  10,  10,  10,  10,   0, -10,
+            -10,  10,  10,  10,  10,  10,  10, -10,
+            -10,   5,   0,   0,   0,   0,   5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+        },
+        // rook
+        {
+              0,   0,   0,   0,   0,   0,   0,   0,
+              5,  10,  10,  10,  10,  10,  10,   5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+              0,   0,   0,   5,   5,   0,   0,   0
+        },
+        // queen
+        {
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,   5,   5,   5,   0, -10,
+             -5,   0,   5,   5,   5,   5,   0,  -5,
+              0,   0,   5,   5,   5,   5,   0,  -5,
+            -10,   5,   5,   5,   5,   5,   0, -10,
+            -10,   0,   5,   0,   0,   0,   0, -10,
+            -20, -10, -10,  -5,  -5, -10, -10, -20
+        },
+        // king (stays behind the pawns)
+        {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+             20,  20,   0,   0,   0,   0,  20,  20,
+             20,  30,  10,   0,   0,  10,  30,  20
+        }
+    };
+
+    // endgame: the pawns are worth more as they advance and the king goes to the center, the other pieces keep the same table
+    private static final int[][] ENDGAME_PAWN_KING = {
+        {
+              0,   0,   0,   0,   0,   0,   0,   0,
+             80,  80,  80,  80,  80,  80,  80,  80,
+             50,  50,  50,  50,  50,  50,  50,  50,
+             30,  30,  30,  30,  30,  30,  30,  30,
+             15,  15,  15,  15,  15,  15,  15,  15,
+              5,   5,   5,   5,   5,   5,   5,   5,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0
+        },
+        {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10,   0,   0, -10, -20, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -30,   0,   0,   0,   0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+        }
+    };
+
+    // by kind * 64 + square, positive for white and negative for black
+    private static final int[] MG = new int[12 * 64];
+    private static final int[] EG = new int[12 * 64];
+    private static final int[] KIND_PHASE = new int[12];
+
+    static {
+        for(int type = 0; type < 6; type++){
+            int[] egTable = (type == PieceType.PAWN.ordinal()) ? ENDGAME_PAWN_KING[0]
+                : (type == PieceType.KING.ordinal()) ? ENDGAME_PAWN_KING[1] : MIDDLEGAME[type];
+            int white = ChessPiece.kind(ColorChess.WHITE, PieceType.values()[type]);
+            int black = ChessPiece.kind(ColorChess.BLACK, PieceType.values()[type]);
+            for(int square = 0; square < 64; square++){
+                MG[white * 64 + square] = MIDDLEGAME_VALUES[type] + MIDDLEGAME[type][square];
+                EG[white * 64 + square] = ENDGAME_VALUES[type] + egTable[square];
+                MG[black * 64 + square] = -(MIDDLEGAME_VALUES[type] + MIDDLEGAME[type][square ^ 56]);
+                EG[black * 64 + square] = -(ENDGAME_VALUES[type] + egTable[square ^ 56]);
+            }
+            KIND_PHASE[white] = PHASE[type];
+            KIND_PHASE[black] = PHASE[type];
+        }
+    }
+
+    private PieceSquareTables(){}
+
+    public static int middlegame(int kind, int square){
+        return MG[kind * 64 + square];
+    }
+
+    public static int endgame(int kind, int square){
+        return EG[kind * 64 + square];
+    }
+
+    public static int phase(int kind){
+        return KIND_PHASE[kind];
+    }
+
+    /**
+     * Blends the two scores by the phase (more pieces, closer to the middlegame score)
+     */
+    public static int taper(int middlegame, int endgame, int phase){
+        int p = Math.min(phase, MAX_PHASE);
+        return (middlegame * p + endgame * (MAX_PHASE - p)) / MAX_PHASE;
+    }
+}
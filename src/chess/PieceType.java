@@ -0,0 +1,13 @@
+package chess;
+
+/**
+ * @enum for the piece type (the order is used to index the bitboards)
+ */
+public enum PieceType {
+    PAWN,
+    KNIGHT,
+    BISHOP,
+    ROOK,
+    QUEEN,
+    KING;
+}
@@ -0,0 +1,230 @@
+package chess;
+
+/**
+ * Immutable copy of a position in a few dozen bytes: the 64 squares as 4 bits each (kind + 1, 0 = empty),
+ * the player to move, the castling rights, the passant file, the move counters and the Zobrist key.
+ * It has no pieces and no board, so it can be shared by any number of threads and copied for free.
+ *
+ * Take one with ChessMatch.snapshot(), make moves on it with play(move) (every move gives a new
+ * snapshot, the old one doesn't change) and put it back in a match with ChessMatch.loadSnapshot().
+ */
+public final class PositionSnapshot {
+    // by kind: the black pieces, then the white ones
+    private static final String FEN_LETTERS = "pnbrqkPNBRQK";
+
+    // rights lost when a piece leaves or arrives at the square (king and rook home squares)
+    private static final int[] CASTLING_LOST = new int[64];
+
+    static {
+        CASTLING_LOST[60] = Zobrist.WHITE_KING_SIDE | Zobrist.WHITE_QUEEN_SIDE;
+        CASTLING_LOST[63] = Zobrist.WHITE_KING_SIDE;
+        CASTLING_LOST[56] = Zobrist.WHITE_QUEEN_SIDE;
+        CASTLING_LOST[4] = Zobrist.BLACK_KING_SIDE | Zobrist.BLACK_QUEEN_SIDE;
+        CASTLING_LOST[7] = Zobrist.BLACK_KING_SIDE;
+        CASTLING_LOST[0] = Zobrist.BLACK_QUEEN_SIDE;
+    }
+
+    // squares 0-15, 16-31, 32-47 and 48-63, 4 bits per square
+    private final long squares0;
+    private final long squares1;
+    private final long squares2;
+    private final long squares3;
+    private final long hash;
+    // bit 0 black to move, bits 1-4 castling rights (see Zobrist), bits 5-8 passant file + 1 (0 = none)
+    private final int state;
+    private final int halfmoveClock;
+    private final int fullmoveNumber;
+
+    PositionSnapshot(long[] squares, ColorChess player, int castling, int enPassantFile, int halfmoveClock, int fullmoveNumber, long hash){
+        this.squares0 = squares[0];
+        this.squares1 = squares[1];
+        this.squares2 = squares[2];
+        this.squares3 = squares[3];
+        this.state = ((player == ColorChess.BLACK) ? 1 : 0) | (castling << 1) | ((enPassantFile + 1) << 5);
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        this.hash = hash;
+    }
+
+    /**
+     * @return kind of the piece on the square (see ChessPiece.kind), -1 when it is empty
+     */
+    public int getKind(int square){
+        return (int)(word(square >>> 4) >>> ((square & 15) * 4) & 15) - 1;
+    }
+
+    private long word(int index){
+        switch(index){
+            case 0: return squares0;
+            case 1: return squares1;
+            case 2: return squares2;
+            default: return squares3;
+        }
+    }
+
+    // the player to move, the one that is mated when the position is a checkmate
+    public ColorChess getPlayer(){
+        return ((state & 1) != 0) ? ColorChess.BLACK : ColorChess.WHITE;
+    }
+
+    public int getCastlingRights(){
+        return (state >>> 1) & 15;
+    }
+
+    // file of the pawn that just moved two squares, -1 when there is none
+    public int getEnPassantFile(){
+        return ((state >>> 5) & 15) - 1;
+    }
+
+    public int getHalfmoveClock(){
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber(){
+        return fullmoveNumber;
+    }
+
+    /**
+     * @return the same key ChessMatch.getHash() gives for the position, with getPlayer() to move (on a
+     * checkmate the match gives the key with the winner to move, see ChessMatch.snapshot)
+     */
+    public long getHash(){
+        return hash;
+    }
+
+    /**
+     * Copy-make: the position after the move, as a new snapshot. The move must be legal here
+     * (see ChessMatch.legalMoves); only the piece on the source square is checked.
+     */
+    public PositionSnapshot play(int move){
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flags = Move.flags(move);
+        ColorChess player = getPlayer();
+        int kind = getKind(from);
+        if(kind < 0 || kind / 6 != player.ordinal()){
+            throw new IllegalArgumentException("Error: no piece of the player to move on " + Move.squareName(from));
+        }
+        long[] squares = {squares0, squares1, squares2, squares3};
+        long newHash = hash ^ Zobrist.side();
+
+        set(squares, from, -1);
+        newHash ^= Zobrist.piece(kind, from);
+        int capturedSquare = ((flags & Move.EN_PASSANT) != 0) ? (from & ~7) | (to & 7) : to;
+        int captured = getKind(capturedSquare);
+        if(captured >= 0){
+            set(squares, capturedSquare, -1);
+            newHash ^= Zobrist.piece(captured, capturedSquare);
+        }
+        int placed = (Move.promotion(move) != 0) ? ChessPiece.kind(player, Move.promotionType(move)) : kind;
+        set(squares, to, placed);
+        newHash ^= Zobrist.piece(placed, to);
+
+        if((flags & Move.CASTLING) != 0){
+            int sourceR = (to > from) ? from + 3 : from - 4;
+            int targetR = (to > from) ? from + 1 : from - 1;
+            int rook = ChessPiece.kind(player, PieceType.ROOK);
+            set(squares, sourceR, -1);
+            set(squares, targetR, rook);
+            newHash ^= Zobrist.piece(rook, sourceR) ^ Zobrist.piece(rook, targetR);
+        }
+
+        int castling = getCastlingRights() & ~(CASTLING_LOST[from] | CASTLING_LOST[to]);
+        newHash ^= Zobrist.castling(castling ^ getCastlingRights());
+        int enPassantFile = ((flags & Move.DOUBLE_PUSH) != 0) ? to & 7 : -1;
+        ColorChess next = (player == ColorChess.WHITE) ? ColorChess.BLACK : ColorChess.WHITE;
+        newHash ^= Zobrist.enPassant(hashedEnPassantFile(player, getEnPassantFile(), squares1, squares2))
+            ^ Zobrist.enPassant(hashedEnPassantFile(next, enPassantFile, squares[1], squares[2]));
+        return new PositionSnapshot(squares, next, castling, enPassantFile,
+            (kind % 6 == PieceType.PAWN.ordinal() || captured >= 0) ? 0 : halfmoveClock + 1,
+            fullmoveNumber + ((player == ColorChess.BLACK) ? 1 : 0), newHash);
+    }
+
+    private static void set(long[] squares, int square, int kind){
+        int shift = (square & 15) * 4;
+        squares[square >>> 4] = (squares[square >>> 4] & ~(15L << shift)) | ((long)(kind + 1) << shift);
+    }
+
+    // the passant file is only in the hash when a pawn of the player to move can really take (same rule as ChessMatch)
+    private static int hashedEnPassantFile(ColorChess player, int file, long s1, long s2){
+        if(file < 0){
+            return -1;
+        }
+        // the pawn that moved is on the 5th row from its side: squares 24-31 (black, upper half of squares1)
+        // or 32-39 (white, lower half of squares2)
+        long row = (player == ColorChess.WHITE) ? s1 >>> 32 : s2;
+        long taker = ChessPiece.kind(player, PieceType.PAWN) + 1;
+        if((file > 0 && ((row >>> ((file - 1) * 4)) & 15) == taker) || (file < 7 && ((row >>> ((file + 1) * 4)) & 15) == taker)){
+            return file;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position in FEN, the same ChessMatch.toFen() writes
+     */
+    public String toFen(){
+        StringBuilder sb = new StringBuilder(90);
+        for(int row = 0; row < 8; row++){
+            int empty = 0;
+            for(int column = 0; column < 8; column++){
+                int kind = getKind(row * 8 + column);
+                if(kind < 0){
+                    empty++;
+                } else{
+                    if(empty > 0){
+                        sb.append((char)('0' + empty));
+                        empty = 0;
+                    }
+                    sb.append(FEN_LETTERS.charAt(kind));
+                }
+            }
+            if(empty > 0){
+                sb.append((char)('0' + empty));
+            }
+            if(row < 7){
+                sb.append('/');
+            }
+        }
+        sb.append(' ').append((getPlayer() == ColorChess.WHITE) ? 'w' : 'b').append(' ');
+        int castling = getCastlingRights();
+        if(castling == 0){
+            sb.append('-');
+        } else{
+            if((castling & Zobrist.WHITE_KING_SIDE) != 0) sb.append('K');
+            if((castling & Zobrist.WHITE_QUEEN_SIDE) != 0) sb.append('Q');
+            if((castling & Zobrist.BLACK_KING_SIDE) != 0) sb.append('k');
+            if((castling & Zobrist.BLACK_QUEEN_SIDE) != 0) sb.append('q');
+        }
+        sb.append(' ');
+        int file = getEnPassantFile();
+        if(file < 0){
+            sb.append('-');
+        } else{
+            sb.append((char)('a' + file)).append((getPlayer() == ColorChess.WHITE) ? '6' : '3');
+        }
+        sb.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o){
+        if(!(o instanceof PositionSnapshot)){
+            return false;
+        }
+        PositionSnapshot other = (PositionSnapshot)o;
+        return squares0 == other.squares0 && squares1 == other.squares1 && squares2 == other.squares2
+            && squares3 == other.squares3 && state == other.state && halfmoveClock == other.halfmoveClock
+            && fullmoveNumber == other.fullmoveNumber;
+    }
+
+    @Override
+    public int hashCode(){
+        return Long.hashCode(hash);
+    }
+
+    @Override
+    public String toString(){
+        return toFen();
+    }
+}
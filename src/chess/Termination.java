@@ -0,0 +1,28 @@
+package chess;
+
+/**
+ * @enum how a game ended (NONE while it goes on), see ChessMatch.getTermination
+ */
+public enum Termination {
+    NONE("-"),
+    CHECKMATE("checkmate"),
+    STALEMATE("stalemate"),
+    THREEFOLD_REPETITION("threefold repetition"),
+    FIFTY_MOVES("fifty-move rule"),
+    INSUFFICIENT_MATERIAL("insufficient material");
+
+    private final String description;
+
+    Termination(String description){
+        this.description = description;
+    }
+
+    public boolean isDraw(){
+        return this != NONE && this != CHECKMATE;
+    }
+
+    @Override
+    public String toString(){
+        return description;
+    }
+}
@@ -0,0 +1,66 @@
+package chess;
+
+/**
+ * Random keys for the Zobrist hash of a position: the hash is the XOR of the keys of every
+ * piece on its square, the side to move, each castling right and the passant file,
+ * so a move only needs to XOR in and out what it changed.
+ */
+final class Zobrist {
+    public static final int WHITE_KING_SIDE = 1;
+    public static final int WHITE_QUEEN_SIDE = 2;
+    public static final int BLACK_KING_SIDE = 4;
+    public static final int BLACK_QUEEN_SIDE = 8;
+
+    private static final long[] PIECES = new long[ColorChess.values().length * PieceType.values().length * 64];
+    private static final long[] CASTLING = new long[4];
+    private static final long[] EN_PASSANT = new long[8];
+    private static final long SIDE;
+
+    static {
+        int n = 0;
+        for(int i = 0; i < PIECES.length; i++){
+            PIECES[i] = key(n++);
+        }
+        for(int i = 0; i < CASTLING.length; i++){
+            CASTLING[i] = key(n++);
+        }
+        for(int i = 0; i < EN_PASSANT.length; i++){
+            EN_PASSANT[i] = key(n++);
+        }
+        SIDE = key(n);
+    }
+
+    private Zobrist(){}
+
+    public static long piece(int kind, int square){
+        return PIECES[kind * 64 + square];
+    }
+
+    // black to move
+    public static long side(){
+        return SIDE;
+    }
+
+    // XOR of the keys of every right in the mask (see WHITE_KING_SIDE...)
+    public static long castling(int rights){
+        long key = 0L;
+        for(int i = 0; i < CASTLING.length; i++){
+            if((rights & (1 << i)) != 0){
+                key ^= CASTLING[i];
+            }
+        }
+        return key;
+    }
+
+    public static long enPassant(int file){
+        return (file < 0) ? 0L : EN_PASSANT[file];
+    }
+
+    // n-th output of splitmix64 with a fixed seed, so a position always gets the same key
+    private static long key(int n){
+        long z = 0x2545F4914F6CDD1DL + (n + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,9 +1,10 @@
 package chess.pieces;
 
 import board.Board;
-import board.Position;
+import chess.Bitboards;
 import chess.ChessPiece;
 import chess.ColorChess;
+import chess.PieceType;
 
 public class Bishop extends ChessPiece{
 
@@ -17,51 +18,13 @@ public class Bishop extends ChessPiece{
     }
 
     @Override
-    public boolean[][] possibleMoves() {
-        boolean[][] mat = new boolean[getBoard().getRow()][getBoard().getColumn()];
-
-        Position p = new Position(0, 0);
-        
-        // nw
-        p.setValues(position.getRow() - 1, position.getColumn() - 1);
-        while(getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-            p.setValues(p.getRow() - 1, p.getColumn() - 1);
-        }
-        if(getBoard().positionExists(p) && isThereOpponentPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        // ne
-        p.setValues(position.getRow() - 1, position.getColumn() + 1);
-        while(getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-            p.setValues(p.getRow() - 1, p.getColumn() + 1);
-        }
-        if(getBoard().positionExists(p) && isThereOpponentPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        // se
-        p.setValues(position.getRow() + 1, position.getColumn() + 1);
-        while(getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-            p.setValues(p.getRow() + 1, p.getColumn() + 1);
-        }
-        if(getBoard().positionExists(p) && isThereOpponentPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        // sw
-        p.setValues(position.getRow() + 1, position.getColumn() - 1);
-        while(getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-            p.setValues(p.getRow() + 1, p.getColumn() - 1);
-        }
-        if(getBoard().positionExists(p) && isThereOpponentPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
+    public PieceType getType(){
+        return PieceType.BISHOP;
+    }
 
-        return mat;
+    @Override
+    public long possibleMovesBitboard() {
+        // the four diagonals, stopping on the first piece (captured if it is an opponent)
+        return Bitboards.bishopAttacks(square, getBoard().getOccupied()) & ~ownPieces();
     }
 }
@@ -1,10 +1,12 @@
 package chess.pieces;
 
 import board.Board;
-import board.Position;
+import chess.Bitboards;
 import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.ColorChess;
+import chess.Move;
+import chess.PieceType;
 
 public class King extends ChessPiece{
 
@@ -20,95 +22,55 @@ public class King extends ChessPiece{
         return "\u2654";
     }
 
-    // Method that make sure that the king can move
-    private boolean canMove(Position position){
-        ChessPiece p = (ChessPiece) getBoard().piece(position);
-        return p == null || p.getColor() != getColor(); 
+    @Override
+    public PieceType getType(){
+        return PieceType.KING;
     }
 
-    private boolean testRookCastling(Position position){
-        ChessPiece p = (ChessPiece)getBoard().piece(position);
+    private boolean testRookCastling(int square){
+        ChessPiece p = (ChessPiece)getBoard().piece(square);
         return p != null && p instanceof Rook && p.getColor() == getColor() && p.getMoveCount() == 0; 
     }
 
     @Override
-    public boolean[][] possibleMoves() {
-        boolean[][] mat = new boolean[getBoard().getRow()][getBoard().getColumn()];
-
-        Position p = new Position(0, 0);
-
-        // Possible moves above
-        p.setValues(position.getRow() - 1, position.getColumn());
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        // Possible moves below
-        p.setValues(position.getRow() + 1, position.getColumn());
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        // Possible moves left
-        p.setValues(position.getRow(), position.getColumn() - 1);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        // Possible moves right
-        p.setValues(position.getRow(), position.getColumn() + 1);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        // Possible moves nw
-        p.setValues(position.getRow() - 1, position.getColumn() - 1);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        // Possible moves ne
-        p.setValues(position.getRow() - 1, position.getColumn() + 1);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        // Possible moves sw
-        p.setValues(position.getRow() + 1, position.getColumn() - 1);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        // Possible moves se
-        p.setValues(position.getRow() + 1, position.getColumn() + 1);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
+    public long possibleMovesBitboard() {
+        // one square in every direction
+        long mat = Bitboards.kingAttacks(square) & ~ownPieces();
 
         // special move: castling
         if(getMoveCount() == 0 && !chessMatch.getCheck()){
+            long occupied = getBoard().getOccupied();
             // small castling
-            Position posT1 = new Position(position.getRow(), position.getColumn() + 3);
-            if(testRookCastling(posT1)){
-                Position p1 = new Position(position.getRow(), position.getColumn() + 1);
-                Position p2 = new Position(position.getRow(), position.getColumn() + 2);
-                if(getBoard().piece(p1) == null && getBoard().piece(p2) == null){
-                    mat[position.getRow()][position.getColumn() + 2] = true;
+            if((square & 7) + 3 < 8 && testRookCastling(square + 3)){
+                if((occupied & (Bitboards.bit(square + 1) | Bitboards.bit(square + 2))) == 0){
+                    mat |= Bitboards.bit(square + 2);
                 }
             }
             
             // big castling
-            Position posT2 = new Position(position.getRow(), position.getColumn() - 4);
-            if(testRookCastling(posT2)){
-                Position p1 = new Position(position.getRow(), position.getColumn() - 1);
-                Position p2 = new Position(position.getRow(), position.getColumn() - 2);
-                Position p3 = new Position(position.getRow(), position.getColumn() - 3);
-                if(getBoard().piece(p1) == null && getBoard().piece(p2) == null && getBoard().piece(p3) == null){
-                    mat[position.getRow()][position.getColumn() - 2] = true;
+            if((square & 7) - 4 >= 0 && testRookCastling(square - 4)){
+                if((occupied & (Bitboards.bit(square - 1) | Bitboards.bit(square - 2) | Bitboards.bit(square - 3))) == 0){
+                    mat |= Bitboards.bit(square - 2);
                 }
             }
         }
         
         return mat;
     }
+
+    @Override
+    public int possibleMoves(int[] moves, int count){
+        long targets = possibleMovesBitboard();
+        long occupied = getBoard().getOccupied();
+        while(targets != 0){
+            int target = Long.numberOfTrailingZeros(targets);
+            int flags = ((occupied & Bitboards.bit(target)) != 0) ? Move.CAPTURE : 0;
+            if(target == square + 2 || target == square - 2){
+                flags = Move.CASTLING;
+            }
+            moves[count++] = Move.of(square, target, flags, 0);
+            targets &= targets - 1;
+        }
+        return count;
+    }
 }
@@ -1,9 +1,10 @@
 package chess.pieces;
 
 import board.Board;
-import board.Position;
+import chess.Bitboards;
 import chess.ChessPiece;
 import chess.ColorChess;
+import chess.PieceType;
 
 public class Knight extends ChessPiece{
 
@@ -16,58 +17,14 @@ public class Knight extends ChessPiece{
         return "\u2658";
     }
 
-    private boolean canMove(Position position){
-        ChessPiece p = (ChessPiece) getBoard().piece(position);
-        return p == null || p.getColor() != getColor(); 
+    @Override
+    public PieceType getType(){
+        return PieceType.KNIGHT;
     }
 
     @Override
-    public boolean[][] possibleMoves() {
-        boolean[][] mat = new boolean[getBoard().getRow()][getBoard().getColumn()];
-
-        Position p = new Position(0, 0);
-
+    public long possibleMovesBitboard() {
         // Knight possible moves (L = 8 possibilities)
-        p.setValues(position.getRow() - 1, position.getColumn() - 2);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        p.setValues(position.getRow() - 1, position.getColumn() + 2);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        p.setValues(position.getRow() + 1, position.getColumn() - 2);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        p.setValues(position.getRow() + 1, position.getColumn() + 2);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        p.setValues(position.getRow() - 2, position.getColumn() + 1);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        p.setValues(position.getRow() - 2, position.getColumn() - 1);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        p.setValues(position.getRow() + 2, position.getColumn() + 1);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        p.setValues(position.getRow() + 2, position.getColumn() - 1);
-        if(getBoard().positionExists(p) && canMove(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-        
-        return mat;
+        return Bitboards.knightAttacks(square) & ~ownPieces();
     }
 }
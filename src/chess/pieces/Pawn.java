@@ -1,10 +1,12 @@
 package chess.pieces;
 
 import board.Board;
-import board.Position;
+import chess.Bitboards;
 import chess.ChessMatch;
 import chess.ChessPiece;
 import chess.ColorChess;
+import chess.Move;
+import chess.PieceType;
 
 public class Pawn extends ChessPiece{
 
@@ -21,82 +23,66 @@ public class Pawn extends ChessPiece{
     }
 
     @Override
-    public boolean[][] possibleMoves() {
-        boolean[][] mat = new boolean[getBoard().getRow()][getBoard().getColumn()];
-
-        Position p = new Position(0, 0);
-
-        // Possible moves white pawn (up)
-        if(getColor() == ColorChess.WHITE) {
-            p.setValues(position.getRow() - 1, position.getColumn());
-            if(getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)){
-                mat[p.getRow()][p.getColumn()] = true;
-            }
-
-            p.setValues(position.getRow() - 2, position.getColumn());
-            Position p2 = new Position(position.getRow() - 1, position.getColumn());
-            if(getBoard().positionExists(p) && !getBoard().thereIsAPiece(p) && getBoard().positionExists(p2) && !getBoard().thereIsAPiece(p2) && getMoveCount() == 0){
-                mat[p.getRow()][p.getColumn()] = true;
-            }
-
-            p.setValues(position.getRow() - 1, position.getColumn() - 1);
-            if(getBoard().positionExists(p) && isThereOpponentPiece(p)){
-                mat[p.getRow()][p.getColumn()] = true;
-            }
-
-            p.setValues(position.getRow() - 1, position.getColumn() + 1);
-            if(getBoard().positionExists(p) && isThereOpponentPiece(p)){
-                mat[p.getRow()][p.getColumn()] = true;
-            }
-
-            // special movie: passant white
-            if(position.getRow() == 3){
-                Position left = new Position(position.getRow(), position.getColumn() - 1);
-                if(getBoard().positionExists(left) && isThereOpponentPiece(left) && getBoard().piece(left) == chessMatch.getEnPassantVulnerable()){
-                    mat[left.getRow() - 1][left.getColumn()] = true;
-                }
+    public PieceType getType(){
+        return PieceType.PAWN;
+    }
 
-                Position right = new Position(position.getRow(), position.getColumn() + 1);
-                if(getBoard().positionExists(right) && isThereOpponentPiece(right) && getBoard().piece(right) == chessMatch.getEnPassantVulnerable()){
-                    mat[right.getRow() - 1][right.getColumn()] = true;
-                }
-            }
-        // possible moves black pawn (down) 
-        } else{
-            p.setValues(position.getRow() + 1, position.getColumn());
-            if(getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)){
-                mat[p.getRow()][p.getColumn()] = true;
+    @Override
+    public long possibleMovesBitboard() {
+        long empty = ~getBoard().getOccupied();
+        // white pawns go up (row - 1 = square - 8), black pawns go down
+        int forward = (getColor() == ColorChess.WHITE) ? -8 : 8;
+        long mat = 0L;
+
+        int one = square + forward;
+        if(one >= 0 && one < 64 && (empty & Bitboards.bit(one)) != 0){
+            mat |= Bitboards.bit(one);
+
+            int two = one + forward;
+            if(getMoveCount() == 0 && two >= 0 && two < 64 && (empty & Bitboards.bit(two)) != 0){
+                mat |= Bitboards.bit(two);
             }
+        }
 
-            p.setValues(position.getRow() + 2, position.getColumn());
-            Position p2 = new Position(position.getRow() + 1, position.getColumn());
-            if(getBoard().positionExists(p) && !getBoard().thereIsAPiece(p) && getBoard().positionExists(p2) && !getBoard().thereIsAPiece(p2) && getMoveCount() == 0){
-                mat[p.getRow()][p.getColumn()] = true;
-            }
+        long attacks = Bitboards.pawnAttacks(getColor(), square);
+        mat |= attacks & opponentPieces();
 
-            p.setValues(position.getRow() + 1, position.getColumn() - 1);
-            if(getBoard().positionExists(p) && isThereOpponentPiece(p)){
-                mat[p.getRow()][p.getColumn()] = true;
+        // special movie: passant (the vulnerable pawn is beside this one, so the square behind it is one of our diagonals)
+        ChessPiece vulnerable = chessMatch.getEnPassantVulnerable();
+        if(vulnerable != null && vulnerable.getColor() != getColor() && vulnerable.getSquare() >= 0){
+            long target = Bitboards.bit(vulnerable.getSquare() + forward);
+            if((attacks & target) != 0 && (empty & target) != 0){
+                mat |= target;
             }
+        }
+        return mat;
+    }
 
-            p.setValues(position.getRow() + 1, position.getColumn() + 1);
-            if(getBoard().positionExists(p) && isThereOpponentPiece(p)){
-                mat[p.getRow()][p.getColumn()] = true;
+    @Override
+    public int possibleMoves(int[] moves, int count){
+        long targets = possibleMovesBitboard();
+        long occupied = getBoard().getOccupied();
+        while(targets != 0){
+            int target = Long.numberOfTrailingZeros(targets);
+            int flags = 0;
+            if((target & 7) != (square & 7)){
+                // diagonal to an empty square is only possible with the passant
+                flags = ((occupied & Bitboards.bit(target)) != 0) ? Move.CAPTURE : Move.EN_PASSANT;
+            } else if(target == square + 16 || target == square - 16){
+                flags = Move.DOUBLE_PUSH;
             }
 
-            // special movie: passant black
-            if(position.getRow() == 4){
-                Position left = new Position(position.getRow(), position.getColumn() - 1);
-                if(getBoard().positionExists(left) && isThereOpponentPiece(left) && getBoard().piece(left) == chessMatch.getEnPassantVulnerable()){
-                    mat[left.getRow() + 1][left.getColumn()] = true;
-                }
-
-                Position right = new Position(position.getRow(), position.getColumn() + 1);
-                if(getBoard().positionExists(right) && isThereOpponentPiece(right) && getBoard().piece(right) == chessMatch.getEnPassantVulnerable()){
-                    mat[right.getRow() + 1][right.getColumn()] = true;
-                }
+            // special move: promoted (one move for each piece the pawn can become)
+            if(target < 8 || target >= 56){
+                moves[count++] = Move.of(square, target, flags, PieceType.QUEEN.ordinal());
+                moves[count++] = Move.of(square, target, flags, PieceType.ROOK.ordinal());
+                moves[count++] = Move.of(square, target, flags, PieceType.BISHOP.ordinal());
+                moves[count++] = Move.of(square, target, flags, PieceType.KNIGHT.ordinal());
+            } else{
+                moves[count++] = Move.of(square, target, flags, 0);
             }
+            targets &= targets - 1;
         }
-        return mat;
+        return count;
     }
 }
@@ -1,9 +1,10 @@
 package chess.pieces;
 
 import board.Board;
-import board.Position;
+import chess.Bitboards;
 import chess.ChessPiece;
 import chess.ColorChess;
+import chess.PieceType;
 
 public class Rook extends ChessPiece{
 
@@ -17,51 +18,13 @@ public class Rook extends ChessPiece{
     }
 
     @Override
-    public boolean[][] possibleMoves() {
-        boolean[][] mat = new boolean[getBoard().getRow()][getBoard().getColumn()];
-
-        Position p = new Position(0, 0);
-        
-        // possible moves above
-        p.setValues(position.getRow() - 1, position.getColumn());
-        while(getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-            p.setRow(p.getRow() - 1);
-        }
-        if(getBoard().positionExists(p) && isThereOpponentPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        // possible moves left
-        p.setValues(position.getRow(), position.getColumn() - 1);
-        while(getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-            p.setColumn(p.getColumn() - 1);
-        }
-        if(getBoard().positionExists(p) && isThereOpponentPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        // possible moves right
-        p.setValues(position.getRow(), position.getColumn() + 1);
-        while(getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-            p.setColumn(p.getColumn() + 1);
-        }
-        if(getBoard().positionExists(p) && isThereOpponentPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
-
-        // possible moves below
-        p.setValues(position.getRow() + 1, position.getColumn());
-        while(getBoard().positionExists(p) && !getBoard().thereIsAPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-            p.setRow(p.getRow() + 1);
-        }
-        if(getBoard().positionExists(p) && isThereOpponentPiece(p)){
-            mat[p.getRow()][p.getColumn()] = true;
-        }
+    public PieceType getType(){
+        return PieceType.ROOK;
+    }
 
-        return mat;
+    @Override
+    public long possibleMovesBitboard() {
+        // rows and columns, stopping on the first piece (captured if it is an opponent)
+        return Bitboards.rookAttacks(square, getBoard().getOccupied()) & ~ownPieces();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package engine;
+
+import chess.ChessMatch;
+
+/**
+ * Static evaluation: material plus piece-square tables, tapered between the middlegame and the endgame.
+ */
+public final class Evaluation {
+    private Evaluation(){}
+
+    /**
+     * Material and piece-square tables (see chess.PieceSquareTables), kept up to date by the match
+     * on every move, so a leaf costs a few additions. Run with -ea to have the search check it
+     * against a full recompute.
+     * @return score in centipawns from the side of the player to move
+     */
+    public static int evaluate(ChessMatch chessMatch){
+        return chessMatch.getEvaluation();
+    }
+
+    // sums the whole board again, to check the incremental terms
+    static boolean isConsistent(ChessMatch chessMatch){
+        return chessMatch.getEvaluation() == chessMatch.recomputeEvaluation();
+    }
+}
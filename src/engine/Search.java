@@ -0,0 +1,503 @@
+package engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import analysis.StaticExchange;
+import analysis.TranspositionTable;
+import chess.ChessMatch;
+import chess.ChessPiece;
+import chess.Move;
+import chess.PieceType;
+
+/**
+ * Negamax alpha-beta search over ChessMatch.legalMoves / makeMove / undoMove.
+ *
+ * Iterative deepening from depth 1: every iteration starts with an aspiration window around the
+ * score of the previous one and searches the first move of each node with the full window and the
+ * others with a null window (principal variation search), searching again only when one of them
+ * turns out better. Moves are tried in the order hash move, captures (most valuable victim, least
+ * valuable attacker), killer moves, the other moves by history, then the captures that lose material
+ * (static exchange evaluation). The leaves go through a quiescence search of the captures and
+ * promotions that don't lose material.
+ */
+public class Search {
+    public static final int MAX_PLY = 64;
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+
+    private static final int ASPIRATION_WINDOW = 25;
+
+    // move ordering scores
+    private static final int HASH_MOVE = 4_000_000;
+    private static final int CAPTURE = 3_000_000;
+    private static final int KILLER = 2_000_000;
+    private static final int HISTORY_MAX = 1_000_000;
+    private static final int LOSING_CAPTURE = -1_000_000;
+
+    private ChessMatch chessMatch;
+    private TranspositionTable table;
+    private Consumer<SearchInfo> listener;
+
+    // shared by the searches of one SmpSearch, which resets it and ages the table once for all of them;
+    // a search on its own does both when it starts
+    private AtomicBoolean stopped;
+    private boolean ownsStopSignal;
+    // System.nanoTime() when the search has to stop, 0 = no time limit
+    private long deadline;
+    private long timeLimit;
+    // no new iteration is started after this time (0 = no limit)
+    private long softTimeLimit;
+    // first depth of the iterations (helpers of the parallel search start deeper, see SmpSearch)
+    private int startDepth = 1;
+    private long nodes;
+
+    // one move list per ply, so the search doesn't allocate
+    private int[][] moves = new int[MAX_PLY + 1][Move.MAX_MOVES];
+    private int[][] scores = new int[MAX_PLY + 1][Move.MAX_MOVES];
+    private int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private int[] pvLength = new int[MAX_PLY + 1];
+    // scratch array of the static exchange evaluations
+    private int[] exchangeGains = new int[StaticExchange.MAX_CAPTURES];
+    private int[][] killers = new int[MAX_PLY + 1][2];
+    // quiet moves that caused a cutoff, by kind of the moved piece and target square
+    private int[][] history = new int[12][64];
+    // hashes of the positions on the current line, to find repetitions (the ones before the root are in the match)
+    private long[] lineHashes = new long[MAX_PLY + 1];
+    private int rootPly;
+
+    private int bestMove;
+    private int bestScore;
+    private int completedDepth;
+    private int[] principalVariation = new int[0];
+
+    public Search(ChessMatch chessMatch, TranspositionTable table){
+        this(chessMatch, table, new AtomicBoolean());
+        this.ownsStopSignal = true;
+    }
+
+    Search(ChessMatch chessMatch, TranspositionTable table, AtomicBoolean stopSignal){
+        this.chessMatch = chessMatch;
+        this.table = table;
+        this.stopped = stopSignal;
+    }
+
+    // receives the result of every finished iteration
+    public void setListener(Consumer<SearchInfo> listener){
+        this.listener = listener;
+    }
+
+    /**
+     * @param millis time for the next searches, 0 = until the depth is reached or stop() is called
+     */
+    public void setTimeLimit(long millis){
+        this.timeLimit = millis;
+    }
+
+    /**
+     * @param millis after this time the current iteration is the last one (0 = no limit)
+     */
+    public void setSoftTimeLimit(long millis){
+        this.softTimeLimit = millis;
+    }
+
+    // can be called from another thread, the search returns the best move found so far
+    public void stop(){
+        stopped.set(true);
+    }
+
+    void setStartDepth(int startDepth){
+        this.startDepth = startDepth;
+    }
+
+    public boolean isStopped(){
+        return stopped.get();
+    }
+
+    /**
+     * Searches the position of the match, which is back as it was when this returns
+     * @return best move (packed, see Move), Move.NONE if there is no legal move
+     */
+    public int search(int maxDepth){
+        long start = System.nanoTime();
+        deadline = (timeLimit > 0) ? start + timeLimit * 1_000_000L : 0;
+        if(ownsStopSignal){
+            stopped.set(false);
+            table.newSearch();
+        }
+        nodes = 0;
+        rootPly = chessMatch.getPly();
+        bestMove = Move.NONE;
+        bestScore = 0;
+        completedDepth = 0;
+        principalVariation = new int[0];
+        for(int[] k : killers){
+            Arrays.fill(k, Move.NONE);
+        }
+        for(int[] h : history){
+            Arrays.fill(h, 0);
+        }
+        // checkmate or stalemate: nothing to search
+        if(chessMatch.legalMoves(moves[0]) == 0){
+            return Move.NONE;
+        }
+
+        int score = 0;
+        for(int depth = Math.min(startDepth, maxDepth); depth <= Math.min(maxDepth, MAX_PLY - 1); depth++){
+            score = aspiration(depth, score);
+            if(stopped.get()){
+                break;
+            }
+            bestMove = pv[0][0];
+            bestScore = score;
+            completedDepth = depth;
+            principalVariation = Arrays.copyOf(pv[0], pvLength[0]);
+            if(listener != null){
+                listener.accept(new SearchInfo(depth, score, nodes, System.nanoTime() - start, principalVariation));
+            }
+            // a forced mate shorter than the depth won't change anymore
+            if(Math.abs(score) >= MATE - depth){
+                break;
+            }
+            // the next iteration would take longer than all the previous ones together
+            if(softTimeLimit > 0 && System.nanoTime() - start >= softTimeLimit * 1_000_000L){
+                break;
+            }
+        }
+
+        // stopped before the first iteration finished: any legal move is better than none
+        if(bestMove == Move.NONE){
+            chessMatch.legalMoves(moves[0]);
+            bestMove = moves[0][0];
+        }
+        return bestMove;
+    }
+
+    // the window grows on the failing side until the score falls inside it
+    private int aspiration(int depth, int previous){
+        if(depth < 4){
+            return search(depth, 0, -INFINITY, INFINITY);
+        }
+        int delta = ASPIRATION_WINDOW;
+        int alpha = Math.max(previous - delta, -INFINITY);
+        int beta = Math.min(previous + delta, INFINITY);
+        while(true){
+            int score = search(depth, 0, alpha, beta);
+            if(stopped.get()){
+                return score;
+            }
+            if(score <= alpha){
+                alpha = Math.max(alpha - delta, -INFINITY);
+            } else if(score >= beta){
+                beta = Math.min(beta + delta, INFINITY);
+            } else{
+                return score;
+            }
+            delta *= 2;
+        }
+    }
+
+    private int search(int depth, int ply, int alpha, int beta){
+        pvLength[ply] = ply;
+        lineHashes[ply] = chessMatch.getHash();
+        if(ply > 0 && isDraw(ply)){
+            return 0;
+        }
+        boolean inCheck = chessMatch.getCheck();
+        // check extension: a check never ends the line
+        if(inCheck){
+            depth++;
+        }
+        if(depth <= 0){
+            return quiescence(ply, alpha, beta);
+        }
+        if(ply >= MAX_PLY){
+            return Evaluation.evaluate(chessMatch);
+        }
+
+        boolean pvNode = beta - alpha > 1;
+        long hash = lineHashes[ply];
+        long entry = table.probe(hash);
+        int hashMove = Move.NONE;
+        if(entry != TranspositionTable.NONE){
+            hashMove = TranspositionTable.move(entry);
+            if(!pvNode && TranspositionTable.depth(entry) >= depth){
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if(bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                    || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)){
+                    return score;
+                }
+            }
+        }
+
+        int[] list = moves[ply];
+        int n = chessMatch.legalMoves(list);
+        if(n == 0){
+            return inCheck ? -MATE + ply : 0;
+        }
+        scoreMoves(list, scores[ply], n, hashMove, ply);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMoveHere = Move.NONE;
+        for(int i = 0; i < n; i++){
+            int move = nextMove(list, scores[ply], i, n);
+            makeMove(move);
+            int score;
+            if(i == 0){
+                score = -search(depth - 1, ply + 1, -beta, -alpha);
+            } else{
+                score = -search(depth - 1, ply + 1, -alpha - 1, -alpha);
+                if(score > alpha && score < beta){
+                    score = -search(depth - 1, ply + 1, -beta, -alpha);
+                }
+            }
+            chessMatch.undoMove();
+            if(stopped.get()){
+                return 0;
+            }
+
+            if(score > best){
+                best = score;
+                bestMoveHere = move;
+                if(score > alpha){
+                    alpha = score;
+                    updatePv(ply, move);
+                    if(score >= beta){
+                        if(isQuiet(move)){
+                            rememberCutoff(move, depth, ply);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = (best >= beta) ? TranspositionTable.LOWER_BOUND
+            : (best > originalAlpha) ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+        table.store(hash, depth, bound, toTable(best, ply), bestMoveHere);
+        return best;
+    }
+
+    // only captures and queen promotions, until the position is quiet (all moves when in check)
+    private int quiescence(int ply, int alpha, int beta){
+        pvLength[ply] = ply;
+        if(ply >= MAX_PLY){
+            return Evaluation.evaluate(chessMatch);
+        }
+        boolean inCheck = chessMatch.getCheck();
+        int best = -INFINITY;
+        if(!inCheck){
+            // stand pat: the player doesn't have to capture
+            best = Evaluation.evaluate(chessMatch);
+            assert Evaluation.isConsistent(chessMatch) : "incremental evaluation out of sync: " + chessMatch.toFen();
+            if(best >= beta){
+                return best;
+            }
+            if(best > alpha){
+                alpha = best;
+            }
+        }
+
+        int[] list = moves[ply];
+        int n = chessMatch.legalMoves(list);
+        if(n == 0){
+            return inCheck ? -MATE + ply : 0;
+        }
+        if(!inCheck){
+            int tactical = 0;
+            for(int i = 0; i < n; i++){
+                if(Move.isCapture(list[i]) || Move.promotion(list[i]) == 4){
+                    list[tactical++] = list[i];
+                }
+            }
+            n = tactical;
+        }
+        scoreMoves(list, scores[ply], n, Move.NONE, ply);
+
+        for(int i = 0; i < n; i++){
+            int move = nextMove(list, scores[ply], i, n);
+            // the captures left lose material: standing pat is better
+            if(!inCheck && scores[ply][i] < 0){
+                break;
+            }
+            makeMove(move);
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            chessMatch.undoMove();
+            if(stopped.get()){
+                return 0;
+            }
+            if(score > best){
+                best = score;
+                if(score > alpha){
+                    alpha = score;
+                    updatePv(ply, move);
+                    if(score >= beta){
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private void makeMove(int move){
+        chessMatch.makeMove(move);
+        nodes++;
+        if((nodes & 2047) == 0 && deadline != 0 && System.nanoTime() >= deadline){
+            stopped.set(true);
+        }
+    }
+
+    // fifty moves without captures or pawn moves, or a position repeated on the line or earlier in the game
+    private boolean isDraw(int ply){
+        if(chessMatch.getHalfmoveClock() >= 100){
+            return true;
+        }
+        int first = Math.max(chessMatch.getFirstPly() - rootPly, ply - chessMatch.getHalfmoveClock());
+        for(int i = ply - 2; i >= first; i -= 2){
+            long earlier = (i >= 0) ? lineHashes[i] : chessMatch.getHash(rootPly + i);
+            if(earlier == lineHashes[ply]){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scoreMoves(int[] list, int[] score, int n, int hashMove, int ply){
+        for(int i = 0; i < n; i++){
+            int move = list[i];
+            if(move == hashMove){
+                score[i] = HASH_MOVE;
+            } else if(Move.isCapture(move)){
+                // most valuable victim first, then the least valuable attacker
+                ChessPiece victim = chessMatch.getPiece(Move.to(move));
+                PieceType victimType = (victim == null) ? PieceType.PAWN : victim.getType();
+                PieceType attackerType = chessMatch.getPiece(Move.from(move)).getType();
+                score[i] = CAPTURE + victimType.ordinal() * 10 - attackerType.ordinal() + Move.promotion(move) * 100;
+                // taking a piece worth less than the attacker may lose it (static exchange): then the capture goes last
+                if(Move.promotion(move) == 0 && StaticExchange.value(victimType) < StaticExchange.value(attackerType)){
+                    int exchange = StaticExchange.evaluate(chessMatch, move, exchangeGains);
+                    if(exchange < 0){
+                        score[i] = LOSING_CAPTURE + exchange;
+                    }
+                }
+            } else if(Move.promotion(move) == 4){
+                score[i] = CAPTURE + 90;
+            } else if(Move.promotion(move) != 0){
+                score[i] = -1;
+            } else if(move == killers[ply][0]){
+                score[i] = KILLER + 1;
+            } else if(move == killers[ply][1]){
+                score[i] = KILLER;
+            } else{
+                score[i] = history[chessMatch.getPiece(Move.from(move)).getKind()][Move.to(move)];
+            }
+        }
+    }
+
+    // brings the best remaining move to position i (the rest is often never looked at)
+    private int nextMove(int[] list, int[] score, int i, int n){
+        int best = i;
+        for(int j = i + 1; j < n; j++){
+            if(score[j] > score[best]){
+                best = j;
+            }
+        }
+        int move = list[best];
+        list[best] = list[i];
+        list[i] = move;
+        int s = score[best];
+        score[best] = score[i];
+        score[i] = s;
+        return move;
+    }
+
+    private boolean isQuiet(int move){
+        return !Move.isCapture(move) && Move.promotion(move) == 0;
+    }
+
+    private void rememberCutoff(int move, int depth, int ply){
+        if(killers[ply][0] != move){
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] h = history[chessMatch.getPiece(Move.from(move)).getKind()];
+        h[Move.to(move)] += depth * depth;
+        if(h[Move.to(move)] >= HISTORY_MAX){
+            for(int[] row : history){
+                for(int i = 0; i < row.length; i++){
+                    row[i] /= 2;
+                }
+            }
+        }
+    }
+
+    private void updatePv(int ply, int move){
+        pv[ply][ply] = move;
+        int length = Math.max(pvLength[ply + 1], ply + 1);
+        System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, length - ply - 1);
+        pvLength[ply] = length;
+    }
+
+    // mate scores are stored as distance from the node, not from the root
+    private static int toTable(int score, int ply){
+        if(score >= MATE - MAX_PLY){
+            return score + ply;
+        }
+        if(score <= -MATE + MAX_PLY){
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply){
+        if(score >= MATE - MAX_PLY){
+            return score - ply;
+        }
+        if(score <= -MATE + MAX_PLY){
+            return score + ply;
+        }
+        return score;
+    }
+
+    public int getBestMove(){
+        return bestMove;
+    }
+
+    public int getScore(){
+        return bestScore;
+    }
+
+    // last finished iteration
+    public int getDepth(){
+        return completedDepth;
+    }
+
+    public long getNodes(){
+        return nodes;
+    }
+
+    public int[] getPrincipalVariation(){
+        return principalVariation;
+    }
+
+    /**
+     * Searches one position and prints every iteration
+     * @param args [depth] [FEN]
+     */
+    public static void main(String[] args){
+        int depth = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+        String fen = (args.length > 1) ? String.join(" ", Arrays.copyOfRange(args, 1, args.length)) : ChessMatch.INITIAL_FEN;
+        Search search = new Search(ChessMatch.fromFen(fen), new TranspositionTable(64));
+        search.setListener(info -> System.out.println("info " + info));
+        long start = System.nanoTime();
+        int move = search.search(depth);
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        System.out.println("bestmove " + ((move == Move.NONE) ? "(none)" : Move.toString(move)));
+        System.out.printf("%,d nodes in %.3f s, %,d nodes/sec%n", search.getNodes(), elapsed / 1e9, search.getNodes() * 1_000_000_000L / elapsed);
+    }
+}
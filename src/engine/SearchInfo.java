@@ -0,0 +1,84 @@
+package engine;
+
+import chess.Move;
+
+/**
+ * What the search reports after every finished iteration
+ */
+public class SearchInfo {
+    private int depth;
+    private int score;
+    private long nodes;
+    private long nanos;
+    private int[] pv;
+
+    public SearchInfo(int depth, int score, long nodes, long nanos, int[] pv){
+        this.depth = depth;
+        this.score = score;
+        this.nodes = nodes;
+        this.nanos = nanos;
+        this.pv = pv;
+    }
+
+    public int getDepth(){
+        return depth;
+    }
+
+    // centipawns from the side of the player to move (see isMate)
+    public int getScore(){
+        return score;
+    }
+
+    public long getNodes(){
+        return nodes;
+    }
+
+    long getTimeNanos(){
+        return nanos;
+    }
+
+    public long getTimeMillis(){
+        return nanos / 1_000_000;
+    }
+
+    public long getNodesPerSecond(){
+        return nodes * 1_000_000_000L / Math.max(1, nanos);
+    }
+
+    // principal variation: the best move and the expected answers
+    public int[] getPv(){
+        return pv;
+    }
+
+    public boolean isMate(){
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+
+    // moves to mate, negative when the player to move is the one getting mated
+    public int getMateIn(){
+        int plies = Search.MATE - Math.abs(score);
+        return (score > 0) ? (plies + 1) / 2 : -(plies + 1) / 2;
+    }
+
+    /**
+     * Same form as the UCI info line, like "depth 8 score cp 35 nodes 81234 nps 1500000 time 54 pv e2e4 e7e5"
+     */
+    @Override
+    public String toString(){
+        StringBuilder sb = new StringBuilder();
+        sb.append("depth ").append(depth);
+        if(isMate()){
+            sb.append(" score mate ").append(getMateIn());
+        } else{
+            sb.append(" score cp ").append(score);
+        }
+        sb.append(" nodes ").append(nodes);
+        sb.append(" nps ").append(getNodesPerSecond());
+        sb.append(" time ").append(getTimeMillis());
+        sb.append(" pv");
+        for(int move : pv){
+            sb.append(' ').append(Move.toString(move));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,223 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import analysis.TranspositionTable;
+import chess.ChessMatch;
+import chess.Move;
+
+/**
+ * Lazy SMP: the main search runs on the calling thread and N - 1 helpers search the same position
+ * at the same time, each on its own copy of the match (ChessMatch.copy() gives new pieces, so the
+ * King and Pawn of a copy point to the copy). The only thing they share is the lock-free hash table:
+ * the helpers fill it with results the main search finds later. Half of the helpers start one
+ * depth deeper, so they don't all search the same tree in the same order.
+ * The result is always the one of the main search.
+ */
+public class SmpSearch implements AutoCloseable {
+    public static final int MAX_THREADS = 256;
+
+    private TranspositionTable table;
+    private int threads;
+    private ExecutorService helpersPool;
+    // runs the main search of start()
+    private ExecutorService mainPool;
+    private Consumer<SearchInfo> listener;
+    private long timeLimit;
+    private long softTimeLimit;
+
+    // every search of one call checks this flag, only search() and start() clear it
+    private final AtomicBoolean stopSignal = new AtomicBoolean();
+    // searches of the current (or last) call
+    private volatile Search main;
+    private volatile Search[] helpers = new Search[0];
+
+    public SmpSearch(TranspositionTable table, int threads){
+        this.table = table;
+        setThreads(threads);
+    }
+
+    /**
+     * Changes the number of threads for the next searches (the main one included)
+     */
+    public void setThreads(int threads){
+        if(threads < 1 || threads > MAX_THREADS){
+            throw new IllegalArgumentException("Error: the number of threads must be between 1 and " + MAX_THREADS);
+        }
+        if(helpersPool != null){
+            helpersPool.shutdownNow();
+        }
+        this.threads = threads;
+        this.helpersPool = (threads > 1) ? Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    public int getThreads(){
+        return threads;
+    }
+
+    // receives every iteration of the main search, with the nodes of all threads
+    public void setListener(Consumer<SearchInfo> listener){
+        this.listener = listener;
+    }
+
+    public void setTimeLimit(long millis){
+        this.timeLimit = millis;
+    }
+
+    // see Search.setSoftTimeLimit
+    public void setSoftTimeLimit(long millis){
+        this.softTimeLimit = millis;
+    }
+
+    /**
+     * Searches with every thread and returns when the main search is done and the helpers stopped
+     * @return best move of the main search (packed, see Move)
+     */
+    public int search(ChessMatch chessMatch, int maxDepth){
+        stopSignal.set(false);
+        return run(chessMatch, maxDepth);
+    }
+
+    /**
+     * Starts the search on another thread and returns at once. A stop() made after this call
+     * always reaches the search, even if its threads didn't start yet.
+     * @param whenDone receives the best move, on the search thread
+     */
+    public Future<?> start(ChessMatch chessMatch, int maxDepth, IntConsumer whenDone){
+        stopSignal.set(false);
+        if(mainPool == null){
+            mainPool = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "search-main");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return mainPool.submit(() -> whenDone.accept(run(chessMatch, maxDepth)));
+    }
+
+    private int run(ChessMatch chessMatch, int maxDepth){
+        // one age for the whole search, or the entries of the first threads would look older to the next ones
+        table.newSearch();
+        Search[] searches = new Search[threads - 1];
+        for(int i = 0; i < searches.length; i++){
+            searches[i] = new Search(chessMatch.copy(), table, stopSignal);
+            searches[i].setStartDepth(1 + (i + 1) % 2);
+        }
+        Search mainSearch = new Search(chessMatch, table, stopSignal);
+        mainSearch.setTimeLimit(timeLimit);
+        mainSearch.setSoftTimeLimit(softTimeLimit);
+        if(listener != null){
+            mainSearch.setListener(info -> listener.accept(new SearchInfo(info.getDepth(), info.getScore(),
+                info.getNodes() + helperNodes(searches), info.getTimeNanos(), info.getPv())));
+        }
+        helpers = searches;
+        main = mainSearch;
+
+        List<Future<?>> running = new ArrayList<>();
+        for(Search helper : searches){
+            running.add(helpersPool.submit(() -> helper.search(maxDepth)));
+        }
+        try{
+            return mainSearch.search(maxDepth);
+        } finally{
+            // the helpers stop with the main search
+            stopSignal.set(true);
+            join(running);
+        }
+    }
+
+    // stops the main search and the helpers; the search returns the best move found so far
+    public void stop(){
+        stopSignal.set(true);
+    }
+
+    private void join(List<Future<?>> running){
+        for(Future<?> future : running){
+            try{
+                future.get();
+            } catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                return;
+            } catch(ExecutionException e){
+                throw new IllegalStateException("A search helper failed", e.getCause());
+            }
+        }
+    }
+
+    private static long helperNodes(Search[] searches){
+        long nodes = 0;
+        for(Search search : searches){
+            nodes += search.getNodes();
+        }
+        return nodes;
+    }
+
+    // nodes of every thread in the last search
+    public long getNodes(){
+        Search mainSearch = main;
+        return (mainSearch == null) ? 0 : mainSearch.getNodes() + helperNodes(helpers);
+    }
+
+    public int getScore(){
+        return (main == null) ? 0 : main.getScore();
+    }
+
+    public int getDepth(){
+        return (main == null) ? 0 : main.getDepth();
+    }
+
+    public int[] getPrincipalVariation(){
+        return (main == null) ? new int[0] : main.getPrincipalVariation();
+    }
+
+    /**
+     * Stops any search and ends the helper threads
+     */
+    @Override
+    public void close(){
+        stop();
+        for(ExecutorService pool : new ExecutorService[]{mainPool, helpersPool}){
+            if(pool != null){
+                pool.shutdownNow();
+                try{
+                    pool.awaitTermination(1, TimeUnit.SECONDS);
+                } catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches one position with several threads and prints every iteration
+     * @param args [threads] [depth] [FEN]
+     */
+    public static void main(String[] args){
+        int threads = (args.length > 0) ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int depth = (args.length > 1) ? Integer.parseInt(args[1]) : 9;
+        String fen = (args.length > 2) ? String.join(" ", Arrays.copyOfRange(args, 2, args.length)) : ChessMatch.INITIAL_FEN;
+        try(SmpSearch search = new SmpSearch(new TranspositionTable(256), threads)){
+            search.setListener(info -> System.out.println("info " + info));
+            long start = System.nanoTime();
+            int move = search.search(ChessMatch.fromFen(fen), depth);
+            long elapsed = Math.max(1, System.nanoTime() - start);
+            System.out.println("bestmove " + ((move == Move.NONE) ? "(none)" : Move.toString(move)));
+            System.out.printf("%d threads: %,d nodes in %.3f s, %,d nodes/sec%n", threads, search.getNodes(),
+                elapsed / 1e9, search.getNodes() * 1_000_000_000L / elapsed);
+        }
+    }
+}
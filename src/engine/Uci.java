@@ -0,0 +1,352 @@
+package engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import analysis.TranspositionTable;
+import book.PolyglotBook;
+import chess.ChessException;
+import chess.ChessMatch;
+import chess.ColorChess;
+import chess.Move;
+import tablebase.Tablebases;
+
+/**
+ * UCI (Universal Chess Interface) front-end, so GUIs and tournament managers can use the engine.
+ *
+ * The commands are read on the calling thread and the search runs on its own threads (SmpSearch),
+ * so isready and stop are answered while the engine is thinking: stop only sets the flag every
+ * search node checks.
+ */
+public class Uci {
+    private static final int DEFAULT_HASH = 64;
+    // time kept for the communication with the GUI
+    private static final long MOVE_OVERHEAD = 30;
+
+    private BufferedReader in;
+    private PrintStream out;
+
+    private ChessMatch chessMatch = new ChessMatch();
+    private int hashSize = DEFAULT_HASH;
+    private TranspositionTable table = new TranspositionTable(DEFAULT_HASH);
+    private SmpSearch search;
+    private int[] moves = new int[Move.MAX_MOVES];
+    // Polyglot book played without searching while the position is in it
+    private PolyglotBook book;
+    private boolean ownBook = true;
+    private Random random = new Random();
+    // endgame tables, played without searching when every piece on the board is in one
+    private Tablebases tablebases;
+
+    private Future<?> running;
+    // counted down by stop; "go infinite" can't answer before it
+    private volatile CountDownLatch stopReceived = new CountDownLatch(0);
+
+    public Uci(InputStream in, PrintStream out){
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.out = out;
+        this.search = newSearch(1);
+    }
+
+    /**
+     * Reads commands until "quit" or the end of the input
+     */
+    public void run() throws IOException {
+        String line;
+        while((line = in.readLine()) != null){
+            String[] tokens = line.trim().split("\\s+");
+            if(tokens[0].equals("quit")){
+                break;
+            }
+            try{
+                execute(tokens);
+            } catch(ChessException | IllegalArgumentException e){
+                send("info string " + e.getMessage());
+            }
+        }
+        stopSearch();
+        search.close();
+    }
+
+    private void execute(String[] tokens){
+        switch(tokens[0]){
+            case "uci":
+                send("id name Chess Java");
+                send("id author gabrielcalk");
+                send("option name Hash type spin default " + DEFAULT_HASH + " min 1 max 1024");
+                send("option name Threads type spin default 1 min 1 max " + SmpSearch.MAX_THREADS);
+                send("option name OwnBook type check default true");
+                send("option name BookFile type string default <empty>");
+                send("option name TablebasePath type string default <empty>");
+                send("uciok");
+                break;
+            case "isready":
+                send("readyok");
+                break;
+            case "ucinewgame":
+                stopSearch();
+                table.clear();
+                break;
+            case "setoption":
+                stopSearch();
+                setOption(tokens);
+                break;
+            case "position":
+                stopSearch();
+                position(tokens);
+                break;
+            case "go":
+                stopSearch();
+                go(tokens);
+                break;
+            case "stop":
+                stopSearch();
+                break;
+            default:
+                // unknown commands are ignored (ponderhit, debug, register...)
+                break;
+        }
+    }
+
+    // setoption name <name> value <value>
+    private void setOption(String[] tokens){
+        String name = value(tokens, "name");
+        String value = value(tokens, "value");
+        if(name == null || value == null){
+            return;
+        }
+        if(name.equalsIgnoreCase("Hash")){
+            int megabytes = Integer.parseInt(value);
+            if(megabytes != hashSize){
+                search.close();
+                hashSize = megabytes;
+                table = new TranspositionTable(megabytes);
+                search = newSearch(search.getThreads());
+            }
+        } else if(name.equalsIgnoreCase("Threads")){
+            search.setThreads(Integer.parseInt(value));
+        } else if(name.equalsIgnoreCase("OwnBook")){
+            ownBook = Boolean.parseBoolean(value);
+        } else if(name.equalsIgnoreCase("BookFile")){
+            if(value.isEmpty() || value.equals("<empty>")){
+                book = null;
+                return;
+            }
+            try{
+                book = PolyglotBook.open(Paths.get(value));
+                send("info string book " + value + " with " + book.getEntryCount() + " entries");
+            } catch(IOException e){
+                book = null;
+                send("info string can't open book " + value + ": " + e.getMessage());
+            }
+        } else if(name.equalsIgnoreCase("TablebasePath")){
+            if(value.isEmpty() || value.equals("<empty>")){
+                tablebases = null;
+                return;
+            }
+            try{
+                tablebases = Tablebases.open(Paths.get(value));
+                send("info string " + tablebases.getTables().size() + " tables in " + value);
+            } catch(IOException e){
+                tablebases = null;
+                send("info string can't open tables in " + value + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private SmpSearch newSearch(int threads){
+        SmpSearch newSearch = new SmpSearch(table, threads);
+        newSearch.setListener(info -> send("info " + info));
+        return newSearch;
+    }
+
+    // position [startpos | fen <FEN>] [moves <move> ...]
+    private void position(String[] tokens){
+        int i = 1;
+        if(i < tokens.length && tokens[i].equals("startpos")){
+            chessMatch.loadFen(ChessMatch.INITIAL_FEN);
+            i++;
+        } else if(i < tokens.length && tokens[i].equals("fen")){
+            StringBuilder fen = new StringBuilder();
+            for(i++; i < tokens.length && !tokens[i].equals("moves"); i++){
+                fen.append(tokens[i]).append(' ');
+            }
+            chessMatch.loadFen(fen.toString().trim());
+        } else{
+            throw new IllegalArgumentException("position needs startpos or fen");
+        }
+        if(i < tokens.length && tokens[i].equals("moves")){
+            for(i++; i < tokens.length; i++){
+                int move = findMove(tokens[i]);
+                if(move == Move.NONE){
+                    throw new IllegalArgumentException("Illegal move: " + tokens[i]);
+                }
+                chessMatch.makeMove(move);
+            }
+        }
+    }
+
+    private int findMove(String text){
+        int n = chessMatch.legalMoves(moves);
+        for(int i = 0; i < n; i++){
+            if(Move.toString(moves[i]).equals(text)){
+                return moves[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    // go [wtime <ms>] [btime <ms>] [winc <ms>] [binc <ms>] [movestogo <n>] [movetime <ms>] [depth <n>] [infinite]
+    private void go(String[] tokens){
+        // the game is over: nothing to search (the turn of a checkmate is still the winner's)
+        if(chessMatch.getCheckMate()){
+            send("bestmove 0000");
+            return;
+        }
+        // a book move is answered at once (unless the GUI waits for stop)
+        if(ownBook && book != null && !Arrays.asList(tokens).contains("infinite")){
+            int move = book.randomMove(chessMatch, random);
+            if(move != Move.NONE){
+                send("info string book move");
+                send("bestmove " + Move.toString(move));
+                return;
+            }
+        }
+        // so is a move of the tables, with the distance to mate as score
+        if(tablebases != null && !Arrays.asList(tokens).contains("infinite")){
+            int move = tablebases.bestMove(chessMatch);
+            if(move != Move.NONE){
+                int distance = tablebases.probe(chessMatch);
+                if(distance == Tablebases.DRAW){
+                    send("info depth 1 score cp 0 pv " + Move.toString(move));
+                } else if(distance % 2 == 1){
+                    send("info depth 1 score mate " + (distance + 1) / 2 + " pv " + Move.toString(move));
+                } else{
+                    send("info depth 1 score mate -" + distance / 2 + " pv " + Move.toString(move));
+                }
+                send("bestmove " + Move.toString(move));
+                return;
+            }
+        }
+
+        long time = -1;
+        long increment = 0;
+        int movesToGo = 0;
+        long moveTime = -1;
+        int depth = Search.MAX_PLY;
+        boolean infinite = false;
+        boolean white = chessMatch.getCurrentPlayer() == ColorChess.WHITE;
+        for(int i = 1; i < tokens.length; i++){
+            switch(tokens[i]){
+                case "wtime": if(white) time = Long.parseLong(tokens[++i]); else i++; break;
+                case "btime": if(!white) time = Long.parseLong(tokens[++i]); else i++; break;
+                case "winc": if(white) increment = Long.parseLong(tokens[++i]); else i++; break;
+                case "binc": if(!white) increment = Long.parseLong(tokens[++i]); else i++; break;
+                case "movestogo": movesToGo = Integer.parseInt(tokens[++i]); break;
+                case "movetime": moveTime = Long.parseLong(tokens[++i]); break;
+                case "depth": depth = Integer.parseInt(tokens[++i]); break;
+                case "infinite": infinite = true; break;
+                default: break;
+            }
+        }
+
+        if(moveTime >= 0){
+            search.setTimeLimit(Math.max(1, moveTime - MOVE_OVERHEAD));
+            search.setSoftTimeLimit(0);
+        } else if(time >= 0 && !infinite){
+            allocateTime(time, increment, movesToGo);
+        } else{
+            search.setTimeLimit(0);
+            search.setSoftTimeLimit(0);
+        }
+
+        boolean waitForStop = infinite;
+        stopReceived = new CountDownLatch(1);
+        CountDownLatch stop = stopReceived;
+        running = search.start(chessMatch, depth, move -> {
+            if(waitForStop){
+                try{
+                    stop.await();
+                } catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int[] pv = search.getPrincipalVariation();
+            if(move == Move.NONE){
+                send("bestmove 0000");
+            } else if(pv.length > 1 && pv[0] == move){
+                send("bestmove " + Move.toString(move) + " ponder " + Move.toString(pv[1]));
+            } else{
+                send("bestmove " + Move.toString(move));
+            }
+        });
+    }
+
+    /**
+     * The time of one move grows with the clock: a share of what is left (divided by the moves to
+     * the next time control, or by 25 when there is no control) plus most of the increment.
+     * No iteration is started after half of that time, and the search is stopped at 3 times
+     * that, never using more than 4/5 of the clock.
+     */
+    private void allocateTime(long time, long increment, int movesToGo){
+        long available = Math.max(1, time - MOVE_OVERHEAD);
+        long share = available / ((movesToGo > 0) ? movesToGo : 25) + increment * 3 / 4;
+        long hard = Math.min(share * 3, available * 4 / 5);
+        search.setSoftTimeLimit(Math.max(1, Math.min(share, hard) / 2));
+        search.setTimeLimit(Math.max(1, hard));
+    }
+
+    // stops a running search and waits for its bestmove
+    private void stopSearch(){
+        stopReceived.countDown();
+        search.stop();
+        if(running != null){
+            try{
+                running.get();
+            } catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            } catch(ExecutionException e){
+                // the GUI still waits for a move
+                send("info string search failed: " + e.getCause());
+                send("bestmove 0000");
+            }
+            running = null;
+        }
+    }
+
+    private static String value(String[] tokens, String key){
+        for(int i = 0; i < tokens.length - 1; i++){
+            if(tokens[i].equals(key)){
+                StringBuilder sb = new StringBuilder(tokens[i + 1]);
+                // names and values can have spaces, up to the next keyword
+                for(int j = i + 2; j < tokens.length && !tokens[j].equals("value"); j++){
+                    sb.append(' ').append(tokens[j]);
+                }
+                return sb.toString();
+            }
+        }
+        return null;
+    }
+
+    // one line at a time, the search thread and the input thread both write
+    private void send(String line){
+        synchronized(out){
+            out.println(line);
+            out.flush();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        new Uci(System.in, System.out).run();
+    }
+}
@@ -0,0 +1,227 @@
+package gamedb;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import chess.ChessException;
+import chess.ChessMatch;
+import chess.Move;
+
+/**
+ * Read-only game database in a directory of three memory-mapped files:
+ *
+ * games.dat - the games one after the other, appended: ply count (2 bytes), result (1 byte),
+ *             FEN length and FEN (0 for the initial position), then 2 bytes per move
+ *             (source | target << 6 | promotion << 12)
+ * games.off - where each game starts in games.dat (8 bytes per game)
+ * games.idx - one entry per position of each game, sorted by Zobrist key (see ChessMatch.getHash):
+ *             key (8 bytes) and game number (4 bytes)
+ *
+ * So "all the games that reach this position" is a binary search in games.idx. Games are added
+ * with GameDatabaseWriter; a GameDatabase opened before that doesn't see them.
+ * Queries don't change anything, so one GameDatabase can be used by many threads.
+ */
+public class GameDatabase {
+    static final String DATA_FILE = "games.dat";
+    static final String OFFSETS_FILE = "games.off";
+    static final String INDEX_FILE = "games.idx";
+    static final int ENTRY_SIZE = 12;
+    static final int MAX_PLIES = 0xFFFF;
+
+    private static final String[] RESULTS = {"*", "1-0", "0-1", "1/2-1/2"};
+
+    private final MappedFile data;
+    private final MappedFile offsets;
+    private final MappedFile index;
+    private final int games;
+    private final long entries;
+
+    private GameDatabase(Path directory) throws IOException {
+        // a game record is at most 4 + 255 + 2 * MAX_PLIES bytes
+        data = new MappedFile(directory.resolve(DATA_FILE), 4 + 255 + 2 * MAX_PLIES);
+        offsets = new MappedFile(directory.resolve(OFFSETS_FILE), 8);
+        index = new MappedFile(directory.resolve(INDEX_FILE), ENTRY_SIZE);
+        games = (int)(offsets.size() / 8);
+        entries = index.size() / ENTRY_SIZE;
+    }
+
+    /**
+     * Opens the database written by GameDatabaseWriter in the directory
+     */
+    public static GameDatabase open(Path directory) throws IOException {
+        return new GameDatabase(directory);
+    }
+
+    public int getGameCount(){
+        return games;
+    }
+
+    // positions in the index, counted once per game
+    public long getIndexEntries(){
+        return entries;
+    }
+
+    public long getDataBytes(){
+        return data.size() + offsets.size();
+    }
+
+    public long getBytes(){
+        return data.size() + offsets.size() + index.size();
+    }
+
+    /**
+     * @return number of games that reach the position with the key
+     */
+    public int count(long hash){
+        return (int)(firstEntry(hash, true) - firstEntry(hash, false));
+    }
+
+    /**
+     * Puts in games the numbers of the games that reach the position with the key, in the order they were added
+     * @return how many were put (at most games.length)
+     */
+    public int find(long hash, int[] games){
+        long entry = firstEntry(hash, false);
+        int n = 0;
+        while(n < games.length && entry < entries && index.getLong(entry * ENTRY_SIZE) == hash){
+            games[n++] = index.getInt(entry * ENTRY_SIZE + 8);
+            entry++;
+        }
+        return n;
+    }
+
+    /**
+     * @return the numbers of all the games that reach the position of the match
+     */
+    public int[] findGames(ChessMatch chessMatch){
+        // the key with the real player to move, also after a checkmate (see ChessMatch.snapshot)
+        long hash = chessMatch.snapshot().getHash();
+        int[] found = new int[count(hash)];
+        find(hash, found);
+        return found;
+    }
+
+    // first entry with a key >= hash, or > hash when after is true (binary search)
+    private long firstEntry(long hash, boolean after){
+        long low = 0;
+        long high = entries;
+        while(low < high){
+            long middle = (low + high) >>> 1;
+            long key = index.getLong(middle * ENTRY_SIZE);
+            if(key < hash || (after && key == hash)){
+                low = middle + 1;
+            } else{
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long offset(int game){
+        if(game < 0 || game >= games){
+            throw new IllegalArgumentException("Error: there is no game " + game);
+        }
+        return offsets.getLong((long)game * 8);
+    }
+
+    public int getPlies(int game){
+        return data.getShort(offset(game)) & 0xFFFF;
+    }
+
+    /**
+     * @return "1-0", "0-1", "1/2-1/2" or "*"
+     */
+    public String getResult(int game){
+        return RESULTS[data.getByte(offset(game) + 2)];
+    }
+
+    /**
+     * @return FEN of the start position of the game
+     */
+    public String getStartFen(int game){
+        long position = offset(game);
+        int length = data.getByte(position + 3) & 0xFF;
+        if(length == 0){
+            return ChessMatch.INITIAL_FEN;
+        }
+        byte[] fen = new byte[length];
+        for(int i = 0; i < length; i++){
+            fen[i] = data.getByte(position + 4 + i);
+        }
+        return new String(fen, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Plays the game in the match, from its start position to the end (they can be taken back with takeback)
+     * @return the moves of the game, packed (see Move)
+     */
+    public int[] loadGame(int game, ChessMatch chessMatch){
+        long position = offset(game);
+        int plies = data.getShort(position) & 0xFFFF;
+        int fenLength = data.getByte(position + 3) & 0xFF;
+        chessMatch.loadFen(getStartFen(game));
+        position += 4 + fenLength;
+
+        int[] moves = new int[plies];
+        int[] legal = new int[Move.MAX_MOVES];
+        for(int i = 0; i < plies; i++){
+            int word = data.getShort(position + 2L * i) & 0xFFFF;
+            int count = chessMatch.legalMoves(legal);
+            int move = Move.NONE;
+            for(int j = 0; j < count; j++){
+                if(encode(legal[j]) == (short)word){
+                    move = legal[j];
+                    break;
+                }
+            }
+            if(move == Move.NONE){
+                throw new ChessException("Error: game " + game + " is corrupted at ply " + (i + 1));
+            }
+            chessMatch.makeMove(move);
+            moves[i] = move;
+        }
+        return moves;
+    }
+
+    // the move as it is stored: source, target and promotion, which is enough to find it in the legal moves
+    static short encode(int move){
+        return (short)(Move.from(move) | Move.to(move) << 6 | Move.promotion(move) << 12);
+    }
+
+    static int resultCode(String result){
+        for(int i = 1; i < RESULTS.length; i++){
+            if(RESULTS[i].equals(result)){
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Prints the games that reach a position and how they ended
+     * @param args directory [FEN]
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1){
+            System.out.println("Usage: GameDatabase <directory> [FEN]");
+            return;
+        }
+        GameDatabase database = open(Paths.get(args[0]));
+        ChessMatch chessMatch = new ChessMatch((args.length > 1) ? args[1] : ChessMatch.INITIAL_FEN);
+        long start = System.nanoTime();
+        int[] found = database.findGames(chessMatch);
+        long elapsed = System.nanoTime() - start;
+
+        int[] results = new int[RESULTS.length];
+        for(int game : found){
+            results[resultCode(database.getResult(game))]++;
+        }
+        System.out.printf("%,d of %,d games in %.1f us: 1-0 %d, 0-1 %d, 1/2-1/2 %d, * %d%n", found.length,
+            database.getGameCount(), elapsed / 1e3, results[1], results[2], results[3], results[0]);
+        for(int i = 0; i < found.length && i < 10; i++){
+            System.out.println("game " + found[i] + " (" + database.getResult(found[i]) + ", " + database.getPlies(found[i]) + " plies)");
+        }
+    }
+}
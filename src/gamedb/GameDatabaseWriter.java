@@ -0,0 +1,308 @@
+package gamedb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import chess.ChessMatch;
+import chess.Move;
+import pgn.PgnReader;
+
+/**
+ * Appends games to a GameDatabase directory (creating it when needed). The games go to the end of
+ * the data file at once; the index entries (one per position of each game) are sorted in runs of
+ * a few million and merged with the index already there by close(), so the memory doesn't grow with
+ * the number of games.
+ */
+public class GameDatabaseWriter implements AutoCloseable {
+    // index entries sorted in memory before going to a run file (24 MB)
+    private static final int RUN_ENTRIES = 1 << 21;
+
+    private final Path directory;
+    private final FileChannel data;
+    private final FileChannel offsets;
+    private long dataSize;
+    private int games;
+
+    private ChessMatch chessMatch = new ChessMatch();
+    private int[] legal = new int[Move.MAX_MOVES];
+    private ByteBuffer record = ByteBuffer.allocate(1024);
+    private ByteBuffer offset = ByteBuffer.allocate(8);
+    private long[] gameHashes = new long[256];
+
+    private long[] runHashes = new long[RUN_ENTRIES];
+    private int[] runGames = new int[RUN_ENTRIES];
+    private int runSize;
+    private List<Path> runs = new ArrayList<>();
+
+    public GameDatabaseWriter(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        data = FileChannel.open(directory.resolve(GameDatabase.DATA_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        offsets = FileChannel.open(directory.resolve(GameDatabase.OFFSETS_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        dataSize = data.size();
+        games = (int)(offsets.size() / 8);
+    }
+
+    // games in the database, the ones added by this writer included
+    public int getGameCount(){
+        return games;
+    }
+
+    /**
+     * Adds one game, checking every move is legal
+     * @param fen start position, null for the initial one
+     * @param moves packed moves (see Move), the first count are used
+     * @param result "1-0", "0-1", "1/2-1/2" or "*"
+     * @return number of the game in the database
+     */
+    public synchronized int add(String fen, int[] moves, int count, String result) throws IOException {
+        if(count > GameDatabase.MAX_PLIES){
+            throw new IllegalArgumentException("Error: a game can't have more than " + GameDatabase.MAX_PLIES + " plies");
+        }
+        chessMatch.loadFen((fen == null) ? ChessMatch.INITIAL_FEN : fen);
+        byte[] fenBytes = (fen == null) ? new byte[0] : fen.getBytes(StandardCharsets.US_ASCII);
+        if(fenBytes.length > 255){
+            throw new IllegalArgumentException("Error: FEN too long");
+        }
+        int size = 4 + fenBytes.length + 2 * count;
+        if(record.capacity() < size){
+            record = ByteBuffer.allocate(size * 2);
+        }
+        record.clear();
+        record.putShort((short)count);
+        record.put((byte)GameDatabase.resultCode(result));
+        record.put((byte)fenBytes.length);
+        record.put(fenBytes);
+
+        if(gameHashes.length < count + 1){
+            gameHashes = new long[(count + 1) * 2];
+        }
+        gameHashes[0] = chessMatch.getHash();
+        for(int i = 0; i < count; i++){
+            int move = moves[i];
+            if(!isLegal(move)){
+                throw new IllegalArgumentException("Error: illegal move " + Move.toString(move) + " at ply " + (i + 1));
+            }
+            record.putShort(GameDatabase.encode(move));
+            chessMatch.makeMove(move);
+            gameHashes[i + 1] = chessMatch.getHash();
+        }
+        record.flip();
+        while(record.hasRemaining()){
+            data.write(record);
+        }
+        offset.clear();
+        offset.putLong(dataSize).flip();
+        while(offset.hasRemaining()){
+            offsets.write(offset);
+        }
+        dataSize += size;
+
+        // a position is indexed once per game, even when it is repeated
+        int game = games++;
+        Arrays.sort(gameHashes, 0, count + 1);
+        for(int i = 0; i <= count; i++){
+            if(i == 0 || gameHashes[i] != gameHashes[i - 1]){
+                if(runSize == RUN_ENTRIES){
+                    spill();
+                }
+                runHashes[runSize] = gameHashes[i];
+                runGames[runSize++] = game;
+            }
+        }
+        return game;
+    }
+
+    private boolean isLegal(int move){
+        int n = chessMatch.legalMoves(legal);
+        for(int i = 0; i < n; i++){
+            if(legal[i] == move){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the entries in memory, sorted, to a new run file
+    private void spill() throws IOException {
+        sort(runHashes, runGames, 0, runSize - 1);
+        Path run = directory.resolve(GameDatabase.INDEX_FILE + ".run" + runs.size());
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))){
+            for(int i = 0; i < runSize; i++){
+                out.writeLong(runHashes[i]);
+                out.writeInt(runGames[i]);
+            }
+        }
+        runs.add(run);
+        runSize = 0;
+    }
+
+    // quicksort of the entries by hash, then game
+    private static void sort(long[] hashes, int[] games, int low, int high){
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            long pivotHash = hashes[middle];
+            int pivotGame = games[middle];
+            int i = low;
+            int j = high;
+            while(i <= j){
+                while(compare(hashes[i], games[i], pivotHash, pivotGame) < 0){
+                    i++;
+                }
+                while(compare(hashes[j], games[j], pivotHash, pivotGame) > 0){
+                    j--;
+                }
+                if(i <= j){
+                    long h = hashes[i];
+                    hashes[i] = hashes[j];
+                    hashes[j] = h;
+                    int g = games[i];
+                    games[i] = games[j];
+                    games[j] = g;
+                    i++;
+                    j--;
+                }
+            }
+            // the smaller side recursively, the bigger one in the loop
+            if(j - low < high - i){
+                sort(hashes, games, low, j);
+                low = i;
+            } else{
+                sort(hashes, games, i, high);
+                high = j;
+            }
+        }
+    }
+
+    private static int compare(long hash1, int game1, long hash2, int game2){
+        int c = Long.compare(hash1, hash2);
+        return (c != 0) ? c : Integer.compare(game1, game2);
+    }
+
+    /**
+     * Writes the index: the index already there and the new runs are merged into a new file,
+     * which then replaces the old one
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try{
+            if(runSize > 0){
+                spill();
+            }
+            Path index = directory.resolve(GameDatabase.INDEX_FILE);
+            if(!runs.isEmpty() || !Files.exists(index)){
+                List<Path> inputs = new ArrayList<>(runs);
+                if(Files.exists(index)){
+                    inputs.add(index);
+                }
+                Path merged = directory.resolve(GameDatabase.INDEX_FILE + ".tmp");
+                merge(inputs, merged);
+                Files.move(merged, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                for(Path run : runs){
+                    Files.deleteIfExists(run);
+                }
+                runs.clear();
+            }
+        } finally{
+            data.close();
+            offsets.close();
+        }
+    }
+
+    // one sorted input of the merge and its current entry
+    private static class Run {
+        DataInputStream in;
+        long hash;
+        int game;
+
+        Run(Path path) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        }
+
+        boolean next() throws IOException {
+            try{
+                hash = in.readLong();
+                game = in.readInt();
+                return true;
+            } catch(EOFException e){
+                in.close();
+                return false;
+            }
+        }
+    }
+
+    private static void merge(List<Path> inputs, Path output) throws IOException {
+        PriorityQueue<Run> queue = new PriorityQueue<>(Math.max(1, inputs.size()), (a, b) -> compare(a.hash, a.game, b.hash, b.game));
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output), 1 << 16))){
+            for(Path input : inputs){
+                Run run = new Run(input);
+                if(run.next()){
+                    queue.add(run);
+                }
+            }
+            while(!queue.isEmpty()){
+                Run run = queue.poll();
+                out.writeLong(run.hash);
+                out.writeInt(run.game);
+                if(run.next()){
+                    queue.add(run);
+                }
+            }
+        } finally{
+            for(Run run : queue){
+                run.in.close();
+            }
+        }
+    }
+
+    /**
+     * Imports the legal games of a PGN file and prints the build time and the size per game
+     * @param args file.pgn directory [threads]
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2){
+            System.out.println("Usage: GameDatabaseWriter <file.pgn> <directory> [threads]");
+            return;
+        }
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : 1;
+        Path directory = Paths.get(args[1]);
+        long start = System.nanoTime();
+        int before;
+        PgnReader.Report report;
+        try(GameDatabaseWriter writer = new GameDatabaseWriter(directory)){
+            before = writer.getGameCount();
+            report = new PgnReader(threads).read(Paths.get(args[0]), (fen, moves, count, result) -> {
+                try{
+                    writer.add(fen, moves, count, result);
+                } catch(IOException e){
+                    throw new IllegalStateException("Error writing the database", e);
+                }
+            });
+        }
+        long elapsed = System.nanoTime() - start;
+        GameDatabase database = GameDatabase.open(directory);
+        int added = database.getGameCount() - before;
+        int total = Math.max(1, database.getGameCount());
+        System.out.println(report);
+        System.out.printf("%,d games added in %.2f s (%,d games/sec)%n", added, elapsed / 1e9, added * 1_000_000_000L / Math.max(1, elapsed));
+        System.out.printf("%,d games, %,d index entries: %.1f bytes/game (games %.1f + index %.1f)%n",
+            database.getGameCount(), database.getIndexEntries(), database.getBytes() / (double)total,
+            database.getDataBytes() / (double)total, (database.getBytes() - database.getDataBytes()) / (double)total);
+    }
+}
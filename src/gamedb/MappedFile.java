@@ -0,0 +1,51 @@
+package gamedb;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only file mapped in chunks of 1 GB, so it can be bigger than one MappedByteBuffer.
+ * Every chunk also maps the first bytes of the next one, so a record that starts in a chunk
+ * can be read from it whole (records can't be longer than that overlap).
+ */
+final class MappedFile {
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK = 1L << CHUNK_BITS;
+
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    MappedFile(Path path, int overlap) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            size = channel.size();
+            chunks = new MappedByteBuffer[(int)((size + CHUNK - 1) >>> CHUNK_BITS)];
+            for(int i = 0; i < chunks.length; i++){
+                long start = (long)i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, CHUNK + overlap));
+            }
+        }
+    }
+
+    long size(){
+        return size;
+    }
+
+    byte getByte(long position){
+        return chunks[(int)(position >>> CHUNK_BITS)].get((int)(position & (CHUNK - 1)));
+    }
+
+    short getShort(long position){
+        return chunks[(int)(position >>> CHUNK_BITS)].getShort((int)(position & (CHUNK - 1)));
+    }
+
+    int getInt(long position){
+        return chunks[(int)(position >>> CHUNK_BITS)].getInt((int)(position & (CHUNK - 1)));
+    }
+
+    long getLong(long position){
+        return chunks[(int)(position >>> CHUNK_BITS)].getLong((int)(position & (CHUNK - 1)));
+    }
+}
@@ -0,0 +1,603 @@
+package pgn;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import chess.ChessException;
+import chess.ChessMatch;
+import chess.Move;
+
+/**
+ * Validates PGN files of any size: every move of every game is decoded from SAN and made on a
+ * ChessMatch, so a game with a move that is not legal (or not readable) is reported with its
+ * number and line.
+ *
+ * The file is memory-mapped in segments of a few MB. Each segment starts at the first game that
+ * begins in it and ends where the next segment starts, so the threads validate whole games without
+ * talking to each other. Only one segment per thread is mapped at a time and everything a thread
+ * uses (match, move buffer, token) is reused, so the memory stays the same for any file size.
+ */
+public class PgnReader {
+    public static final int DEFAULT_SEGMENT_SIZE = 8 << 20;
+    // a game that starts in a segment can go this far past its end
+    private static final int MAX_GAME_SIZE = 1 << 20;
+    // bytes mapped before a segment to find where its first game starts
+    private static final int LOOK_BACK = 64 << 10;
+    // errors kept for the report (the others are only counted)
+    private static final int MAX_ERRORS = 100;
+
+    private final int threads;
+    private final int segmentSize;
+    private GameHandler handler;
+
+    public PgnReader(int threads){
+        this(threads, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public PgnReader(int threads, int segmentSize){
+        if(threads < 1){
+            throw new IllegalArgumentException("Error: needs at least one thread");
+        }
+        if(segmentSize < 1){
+            throw new IllegalArgumentException("Error: the segment size must be positive");
+        }
+        this.threads = threads;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Receives every legal game, on the thread that read it (so in file order only with one thread)
+     */
+    public interface GameHandler {
+        /**
+         * @param fen start position, null for the initial one
+         * @param moves the packed moves (see Move), only the first count are the game's
+         * @param result "1-0", "0-1", "1/2-1/2" or "*"
+         */
+        void game(String fen, int[] moves, int count, String result);
+    }
+
+    /**
+     * One game that could not be replayed
+     */
+    public static class IllegalGame {
+        private final long game;
+        private final long line;
+        private final String message;
+
+        IllegalGame(long game, long line, String message){
+            this.game = game;
+            this.line = line;
+            this.message = message;
+        }
+
+        // number of the game in the file, from 1
+        public long getGame(){
+            return game;
+        }
+
+        // line of the file where the problem is, from 1
+        public long getLine(){
+            return line;
+        }
+
+        public String getMessage(){
+            return message;
+        }
+
+        @Override
+        public String toString(){
+            return "game " + game + ", line " + line + ": " + message;
+        }
+    }
+
+    /**
+     * What read() found in a file
+     */
+    public static class Report {
+        private long bytes;
+        private long games;
+        private long moves;
+        private long illegalGames;
+        private long nanos;
+        private List<IllegalGame> errors = new ArrayList<>();
+
+        public long getBytes(){
+            return bytes;
+        }
+
+        public long getGames(){
+            return games;
+        }
+
+        // moves made in the legal games and in the illegal ones up to the problem
+        public long getMoves(){
+            return moves;
+        }
+
+        public long getIllegalGames(){
+            return illegalGames;
+        }
+
+        // the first illegal games of the file, in order (see getIllegalGames for the count)
+        public List<IllegalGame> getErrors(){
+            return errors;
+        }
+
+        public long getTimeNanos(){
+            return nanos;
+        }
+
+        public long getGamesPerSecond(){
+            return games * 1_000_000_000L / Math.max(1, nanos);
+        }
+
+        public double getMegabytesPerSecond(){
+            return bytes / 1e6 / (Math.max(1, nanos) / 1e9);
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%,d games (%,d illegal), %,d moves, %.1f MB in %.2f s: %,d games/sec, %.1f MB/sec",
+                games, illegalGames, moves, bytes / 1e6, nanos / 1e9, getGamesPerSecond(), getMegabytesPerSecond());
+        }
+    }
+
+    // what one thread found in one segment; the lines and games are counted from the segment start
+    private static class Segment {
+        long lines;
+        long games;
+        long moves;
+        long illegalGames;
+        List<IllegalGame> errors = new ArrayList<>();
+    }
+
+    /**
+     * Reads and validates every game of the file, giving the legal ones to the handler
+     */
+    public Report read(Path file, GameHandler handler) throws IOException {
+        this.handler = handler;
+        try{
+            return read(file);
+        } finally{
+            this.handler = null;
+        }
+    }
+
+    /**
+     * Reads and validates every game of the file
+     */
+    public Report read(Path file) throws IOException {
+        long start = System.nanoTime();
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            long size = channel.size();
+            int count = (int)Math.max(1, (size + segmentSize - 1) / segmentSize);
+            Segment[] segments = new Segment[count];
+            AtomicInteger next = new AtomicInteger();
+
+            int workers = Math.min(threads, count);
+            ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, "pgn-reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try{
+                List<Future<?>> running = new ArrayList<>();
+                for(int i = 0; i < workers; i++){
+                    running.add(pool.submit(() -> {
+                        Validator validator = new Validator();
+                        for(int index = next.getAndIncrement(); index < count; index = next.getAndIncrement()){
+                            segments[index] = validator.read(channel, size, (long)index * segmentSize);
+                        }
+                        return null;
+                    }));
+                }
+                for(Future<?> future : running){
+                    future.get();
+                }
+            } catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading " + file);
+            } catch(ExecutionException e){
+                if(e.getCause() instanceof IOException){
+                    throw (IOException)e.getCause();
+                }
+                throw new IllegalStateException("A PGN reader thread failed", e.getCause());
+            } finally{
+                pool.shutdownNow();
+            }
+
+            // the segments in order give the numbers of the games and lines in the whole file
+            Report report = new Report();
+            report.bytes = size;
+            long lines = 0;
+            for(Segment segment : segments){
+                for(IllegalGame error : segment.errors){
+                    if(report.errors.size() < MAX_ERRORS){
+                        report.errors.add(new IllegalGame(report.games + error.game, lines + error.line, error.message));
+                    }
+                }
+                lines += segment.lines;
+                report.games += segment.games;
+                report.moves += segment.moves;
+                report.illegalGames += segment.illegalGames;
+            }
+            report.nanos = System.nanoTime() - start;
+            return report;
+        }
+    }
+
+    // one per thread: reads the games of one segment at a time
+    private class Validator {
+        private ChessMatch chessMatch = new ChessMatch();
+        private int[] moves = new int[Move.MAX_MOVES];
+        private byte[] token = new byte[32];
+        private StringBuilder fen = new StringBuilder(100);
+        // moves of the game being read, for the handler
+        private int[] gameMoves = new int[256];
+
+        private MappedByteBuffer buffer;
+        private int end;
+        private Segment segment;
+
+        // game being read: its number in the segment, whether it is already illegal
+        private long game;
+        private boolean setUp;
+        private boolean broken;
+        private boolean movesSeen;
+        private int count;
+
+        Segment read(FileChannel channel, long size, long offset) throws IOException {
+            // a little before the segment is mapped too, to see the line before its first game
+            long mapStart = Math.max(0, offset - LOOK_BACK);
+            int base = (int)(offset - mapStart);
+            long length = Math.min(size - mapStart, base + (long)segmentSize + MAX_GAME_SIZE);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, length);
+            segment = new Segment();
+            game = 0;
+            try{
+                int begin = (offset == 0) ? 0 : gameStart(base);
+                int limit = base + (int)Math.min(segmentSize, size - offset);
+                if(begin < 0 || begin >= limit){
+                    // no game starts here, the one before goes on
+                    return segment;
+                }
+                end = gameStart(limit);
+                if(end < 0){
+                    end = (int)length;
+                    if(mapStart + length < size){
+                        segment.errors.add(new IllegalGame(1, 1, "a game is longer than " + MAX_GAME_SIZE + " bytes, the segment was cut"));
+                    }
+                }
+                readGames(begin);
+            } finally{
+                unmap(buffer);
+                buffer = null;
+            }
+            return segment;
+        }
+
+        /**
+         * A game starts with a tag ("[") at the start of a line, after a line that was not a tag
+         * @return the position of the first game that starts at or after from, -1 when none does
+         */
+        private int gameStart(int from){
+            int limit = buffer.limit();
+            for(int i = from; i < limit; i++){
+                if(buffer.get(i) == '[' && (i == 0 || buffer.get(i - 1) == '\n')){
+                    int j = i - 1;
+                    while(j >= 0 && isSpace(buffer.get(j))){
+                        j--;
+                    }
+                    while(j >= 0 && buffer.get(j) != '\n'){
+                        j--;
+                    }
+                    if(j + 1 >= i || buffer.get(j + 1) != '['){
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private void readGames(int i){
+            boolean inGame = false;
+            boolean lineStart = true;
+            long line = 0;
+            while(i < end){
+                byte b = buffer.get(i);
+                if(b == '\n'){
+                    line++;
+                    lineStart = true;
+                    i++;
+                    continue;
+                }
+                if(isSpace(b)){
+                    i++;
+                    continue;
+                }
+                boolean atLineStart = lineStart;
+                lineStart = false;
+
+                if(atLineStart && b == '['){
+                    if(inGame && movesSeen){
+                        // tags after the moves without a result: a new game
+                        endGame(line, "*");
+                        inGame = false;
+                    }
+                    if(!inGame){
+                        newGame();
+                        inGame = true;
+                    }
+                    i = readTag(i + 1);
+                    continue;
+                }
+                if(atLineStart && b == '%'){
+                    i = skipLine(i);
+                    continue;
+                }
+                if(!inGame){
+                    // moves without tags
+                    newGame();
+                    inGame = true;
+                }
+                if(b == '{'){
+                    while(i < end && buffer.get(i) != '}'){
+                        if(buffer.get(i) == '\n'){
+                            line++;
+                        }
+                        i++;
+                    }
+                    i++;
+                    continue;
+                }
+                if(b == ';'){
+                    i = skipLine(i);
+                    continue;
+                }
+                if(b == '('){
+                    // variations are not validated
+                    int depth = 0;
+                    for(; i < end; i++){
+                        byte c = buffer.get(i);
+                        if(c == '('){
+                            depth++;
+                        } else if(c == ')' && --depth == 0){
+                            break;
+                        } else if(c == '\n'){
+                            line++;
+                        }
+                    }
+                    i++;
+                    continue;
+                }
+
+                // one token: move number, move, NAG or result
+                int length = 0;
+                int tokenStart = i;
+                while(i < end && !isSpace(buffer.get(i)) && buffer.get(i) != '{' && buffer.get(i) != '(' && buffer.get(i) != ';'){
+                    if(length < token.length){
+                        token[length] = buffer.get(i);
+                    }
+                    length++;
+                    i++;
+                }
+                if(isResult(length)){
+                    if(inGame){
+                        endGame(line, (length == 1) ? "*" : (length == 7) ? "1/2-1/2" : (token[0] == '1') ? "1-0" : "0-1");
+                    }
+                    inGame = false;
+                    continue;
+                }
+                int moveStart = skipMoveNumber(length);
+                if(moveStart == length || token[0] == '$'){
+                    continue;
+                }
+                movesSeen = true;
+                if(length > token.length){
+                    illegal(line, "move too long at byte " + tokenStart);
+                    continue;
+                }
+                move(moveStart, length, line);
+            }
+            if(inGame){
+                endGame(line, "*");
+            }
+            segment.lines = line;
+        }
+
+        private void newGame(){
+            game++;
+            segment.games++;
+            setUp = false;
+            broken = false;
+            movesSeen = false;
+            count = 0;
+            fen.setLength(0);
+        }
+
+        // the FEN tag is the only one that changes how the moves are read
+        private int readTag(int i){
+            int nameStart = i;
+            while(i < end && !isSpace(buffer.get(i)) && buffer.get(i) != '"' && buffer.get(i) != ']'){
+                i++;
+            }
+            boolean isFen = i - nameStart == 3 && buffer.get(nameStart) == 'F' && buffer.get(nameStart + 1) == 'E' && buffer.get(nameStart + 2) == 'N';
+            while(i < end && buffer.get(i) != '"' && buffer.get(i) != ']' && buffer.get(i) != '\n'){
+                i++;
+            }
+            if(i < end && buffer.get(i) == '"'){
+                for(i++; i < end && buffer.get(i) != '"' && buffer.get(i) != '\n'; i++){
+                    if(buffer.get(i) == '\\' && i + 1 < end){
+                        i++;
+                    }
+                    if(isFen){
+                        fen.append((char)buffer.get(i));
+                    }
+                }
+            }
+            return skipLine(i);
+        }
+
+        private void move(int start, int length, long line){
+            if(broken){
+                return;
+            }
+            if(!setUp(line)){
+                return;
+            }
+            int n = chessMatch.legalMoves(moves);
+            int move;
+            if(start == 0){
+                move = San.parse(chessMatch, moves, n, token, length);
+            } else{
+                System.arraycopy(token, start, token, 0, length - start);
+                move = San.parse(chessMatch, moves, n, token, length - start);
+            }
+            if(move == Move.NONE || move == San.AMBIGUOUS){
+                String san = new String(token, 0, length - start, StandardCharsets.ISO_8859_1);
+                illegal(line, ((move == San.AMBIGUOUS) ? "ambiguous move " : "illegal move ") + san + " at move "
+                    + chessMatch.getFullmoveNumber() + " (" + chessMatch.getCurrentPlayer() + ")");
+                return;
+            }
+            chessMatch.makeMove(move);
+            if(count == gameMoves.length){
+                gameMoves = Arrays.copyOf(gameMoves, count * 2);
+            }
+            gameMoves[count++] = move;
+            segment.moves++;
+        }
+
+        // the start position of the game, from its FEN tag
+        private boolean setUp(long line){
+            if(!setUp){
+                setUp = true;
+                try{
+                    chessMatch.loadFen((fen.length() > 0) ? fen : ChessMatch.INITIAL_FEN);
+                } catch(ChessException e){
+                    illegal(line, e.getMessage());
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void endGame(long line, String result){
+            if(handler != null && !broken && setUp(line)){
+                handler.game((fen.length() > 0) ? fen.toString() : null, gameMoves, count, result);
+            }
+        }
+
+        private void illegal(long line, String message){
+            broken = true;
+            segment.illegalGames++;
+            if(segment.errors.size() < MAX_ERRORS){
+                segment.errors.add(new IllegalGame(game, line + 1, message));
+            }
+        }
+
+        // "12." or "12..." in front of (or instead of) a move
+        private int skipMoveNumber(int length){
+            int i = 0;
+            while(i < length && i < token.length && token[i] >= '0' && token[i] <= '9'){
+                i++;
+            }
+            if(i == 0 || i >= length || token[i] != '.'){
+                // castling can be written with zeros (0-0)
+                return 0;
+            }
+            while(i < length && i < token.length && token[i] == '.'){
+                i++;
+            }
+            return i;
+        }
+
+        private boolean isResult(int length){
+            return (length == 1 && token[0] == '*')
+                || (length == 3 && token[1] == '-' && ((token[0] == '1' && token[2] == '0') || (token[0] == '0' && token[2] == '1')))
+                || (length == 7 && token[0] == '1' && token[1] == '/' && token[3] == '-');
+        }
+
+        private int skipLine(int i){
+            while(i < end && buffer.get(i) != '\n'){
+                i++;
+            }
+            return i;
+        }
+    }
+
+    private static boolean isSpace(byte b){
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    // Unsafe.invokeCleaner (Java 9+) releases a mapping at once, null when it can't be used
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try{
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch(ReflectiveOperationException | RuntimeException e){
+            unsafe = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * Releases the mapping now instead of when the buffer is collected, so the mapped memory
+     * doesn't pile up with the size of the file
+     */
+    private static void unmap(MappedByteBuffer buffer){
+        if(UNSAFE == null || INVOKE_CLEANER == null){
+            return;
+        }
+        try{
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch(ReflectiveOperationException | RuntimeException e){
+            // left to the garbage collector
+        }
+    }
+
+    /**
+     * Validates a PGN file and prints the counts, the speed and the first illegal games
+     * @param args file [threads]
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1){
+            System.out.println("Usage: PgnReader <file.pgn> [threads]");
+            return;
+        }
+        int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Report report = new PgnReader(threads).read(Paths.get(args[0]));
+        for(IllegalGame error : report.getErrors()){
+            System.out.println(error);
+        }
+        if(report.getIllegalGames() > report.getErrors().size()){
+            System.out.printf("... and %,d more illegal games%n", report.getIllegalGames() - report.getErrors().size());
+        }
+        System.out.println(report);
+    }
+}
@@ -0,0 +1,181 @@
+package pgn;
+
+import chess.ChessMatch;
+import chess.Move;
+import chess.PieceType;
+
+/**
+ * Standard Algebraic Notation (Nf3, exd5, O-O, e8=Q+), read against the legal moves of a match
+ * and written for one of them. Reading works on bytes, so the PGN reader doesn't create a String per move.
+ */
+public final class San {
+    // the SAN fits more than one legal move (missing disambiguation)
+    public static final int AMBIGUOUS = -1;
+
+    private static final String PIECE_LETTERS = "PNBRQK";
+
+    private San(){}
+
+    /**
+     * @param moves legal moves of the match (see ChessMatch.legalMoves)
+     * @return the packed move, Move.NONE when no legal move fits, AMBIGUOUS when more than one does
+     */
+    public static int parse(ChessMatch chessMatch, int[] moves, int count, byte[] san, int length){
+        // check, mate and annotation marks say nothing about the move
+        while(length > 0 && (san[length - 1] == '+' || san[length - 1] == '#' || san[length - 1] == '!' || san[length - 1] == '?')){
+            length--;
+        }
+        if(length < 2){
+            return Move.NONE;
+        }
+
+        // castling, also written with zeros
+        if(san[0] == 'O' || san[0] == '0'){
+            boolean kingSide;
+            if(length == 3 && san[1] == '-' && san[2] == san[0]){
+                kingSide = true;
+            } else if(length == 5 && san[1] == '-' && san[2] == san[0] && san[3] == '-' && san[4] == san[0]){
+                kingSide = false;
+            } else{
+                return Move.NONE;
+            }
+            for(int i = 0; i < count; i++){
+                int move = moves[i];
+                if((Move.flags(move) & Move.CASTLING) != 0 && (Move.to(move) > Move.from(move)) == kingSide){
+                    return move;
+                }
+            }
+            return Move.NONE;
+        }
+
+        // promotion at the end, "e8=Q" or "e8Q"
+        int promotion = 0;
+        int last = san[length - 1];
+        if(length >= 3 && PIECE_LETTERS.indexOf(last) > 0 && PIECE_LETTERS.indexOf(last) < 5 && (san[length - 2] == '=' || isRank(san[length - 2]))){
+            promotion = PIECE_LETTERS.indexOf(last);
+            length -= (san[length - 2] == '=') ? 2 : 1;
+        }
+
+        int start = 0;
+        int type = PieceType.PAWN.ordinal();
+        if(PIECE_LETTERS.indexOf(san[0]) > 0){
+            type = PIECE_LETTERS.indexOf(san[0]);
+            start = 1;
+        }
+        if(length - start < 2 || !isFile(san[length - 2]) || !isRank(san[length - 1])){
+            return Move.NONE;
+        }
+        int to = (8 - (san[length - 1] - '0')) * 8 + (san[length - 2] - 'a');
+
+        // what is between the piece and the target: source file and/or row, and the capture mark
+        int fromFile = -1;
+        int fromRank = -1;
+        for(int i = start; i < length - 2; i++){
+            if(isFile(san[i])){
+                fromFile = san[i] - 'a';
+            } else if(isRank(san[i])){
+                fromRank = 8 - (san[i] - '0');
+            } else if(san[i] != 'x' && san[i] != ':' && san[i] != '-'){
+                return Move.NONE;
+            }
+        }
+        // a pawn moving straight stays on its file
+        if(type == PieceType.PAWN.ordinal() && fromFile < 0){
+            fromFile = to & 7;
+        }
+
+        int found = Move.NONE;
+        for(int i = 0; i < count; i++){
+            int move = moves[i];
+            int from = Move.from(move);
+            if(Move.to(move) != to || Move.promotion(move) != promotion
+                || (fromFile >= 0 && (from & 7) != fromFile) || (fromRank >= 0 && (from >>> 3) != fromRank)
+                || chessMatch.getPiece(from).getType().ordinal() != type){
+                continue;
+            }
+            if(found != Move.NONE){
+                return AMBIGUOUS;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    /**
+     * Same as parse, for a SAN in a String
+     */
+    public static int parse(ChessMatch chessMatch, String san){
+        int[] moves = new int[Move.MAX_MOVES];
+        int count = chessMatch.legalMoves(moves);
+        byte[] bytes = new byte[san.length()];
+        for(int i = 0; i < bytes.length; i++){
+            bytes[i] = (byte)san.charAt(i);
+        }
+        return parse(chessMatch, moves, count, bytes, bytes.length);
+    }
+
+    /**
+     * @param move a legal move of the match (see ChessMatch.legalMoves)
+     * @return the move in SAN, with + or # when it gives check or mate (the move is made and undone)
+     */
+    public static String toString(ChessMatch chessMatch, int move){
+        int[] moves = new int[Move.MAX_MOVES];
+        int count = chessMatch.legalMoves(moves);
+        int from = Move.from(move);
+        int to = Move.to(move);
+        PieceType type = chessMatch.getPiece(from).getType();
+        StringBuilder sb = new StringBuilder(8);
+
+        if((Move.flags(move) & Move.CASTLING) != 0){
+            sb.append((to > from) ? "O-O" : "O-O-O");
+        } else{
+            if(type == PieceType.PAWN){
+                if(Move.isCapture(move)){
+                    sb.append((char)('a' + (from & 7)));
+                }
+            } else{
+                sb.append(PIECE_LETTERS.charAt(type.ordinal()));
+                // the file when it tells the pieces apart, else the row, else both
+                boolean other = false;
+                boolean sameFile = false;
+                boolean sameRank = false;
+                for(int i = 0; i < count; i++){
+                    int o = Move.from(moves[i]);
+                    if(o != from && Move.to(moves[i]) == to && chessMatch.getPiece(o).getType() == type){
+                        other = true;
+                        sameFile |= (o & 7) == (from & 7);
+                        sameRank |= (o >>> 3) == (from >>> 3);
+                    }
+                }
+                if(other && (!sameFile || sameRank)){
+                    sb.append((char)('a' + (from & 7)));
+                }
+                if(other && sameFile){
+                    sb.append((char)('0' + 8 - (from >>> 3)));
+                }
+            }
+            if(Move.isCapture(move)){
+                sb.append('x');
+            }
+            sb.append(Move.squareName(to));
+            if(Move.promotion(move) != 0){
+                sb.append('=').append(PIECE_LETTERS.charAt(Move.promotion(move)));
+            }
+        }
+
+        chessMatch.makeMove(move);
+        if(chessMatch.getCheck()){
+            sb.append((chessMatch.legalMoves(moves) == 0) ? '#' : '+');
+        }
+        chessMatch.undoMove();
+        return sb.toString();
+    }
+
+    private static boolean isFile(int c){
+        return c >= 'a' && c <= 'h';
+    }
+
+    private static boolean isRank(int c){
+        return c >= '1' && c <= '8';
+    }
+}
@@ -0,0 +1,113 @@
+package server;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import chess.ChessException;
+import chess.ChessMatch;
+import chess.ChessPosition;
+import chess.Move;
+import chess.PositionSnapshot;
+import chess.Termination;
+
+/**
+ * One match hosted by the server. Every command on a game takes the lock of that game only,
+ * so the moves of one game are applied one at a time while the other games go on in parallel.
+ * (A ReentrantLock instead of synchronized, so a virtual thread waiting for it doesn't block its carrier.)
+ * After every move a snapshot of the position is published, so "board" doesn't need the lock.
+ */
+class Game {
+    private final long id;
+    private final ChessMatch chessMatch;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int[] moves = new int[Move.MAX_MOVES];
+    private volatile PositionSnapshot position;
+
+    Game(long id, ChessMatch chessMatch){
+        this.id = id;
+        this.chessMatch = chessMatch;
+        this.position = chessMatch.snapshot();
+    }
+
+    long getId(){
+        return id;
+    }
+
+    /**
+     * @param move coordinate notation, like e2e4 or e7e8n (the letter of the new piece is required on a
+     * promotion and refused on any other move)
+     * @return "checkmate", "stalemate", "draw" (repetition, fifty moves or insufficient material), "check" or "-"
+     */
+    String move(String move){
+        if(move.length() < 4 || move.length() > 5 || (move.length() == 5 && !isPromotionLetter(move.charAt(4)))){
+            throw new ChessException("Invalid move: " + move);
+        }
+        ChessPosition source = new ChessPosition(move.charAt(0), move.charAt(1) - '0');
+        ChessPosition target = new ChessPosition(move.charAt(2), move.charAt(3) - '0');
+        lock.lock();
+        try{
+            if(chessMatch.getTermination() != Termination.NONE){
+                throw new ChessException("The game is over");
+            }
+            if(isPromotion(move) != (move.length() == 5)){
+                throw new ChessException((move.length() == 5) ? "Not a promotion: " + move : "Missing promotion piece: " + move);
+            }
+            chessMatch.performChessMovie(source, target);
+            if(move.length() == 5){
+                chessMatch.replacePromotedPiece(String.valueOf(Character.toUpperCase(move.charAt(4))));
+            }
+            position = chessMatch.snapshot();
+            Termination termination = chessMatch.getTermination();
+            if(termination == Termination.CHECKMATE){
+                return "checkmate";
+            } else if(termination == Termination.STALEMATE){
+                return "stalemate";
+            } else if(termination != Termination.NONE){
+                return "draw";
+            }
+            return chessMatch.getCheck() ? "check" : "-";
+        } finally{
+            lock.unlock();
+        }
+    }
+
+    // the legal moves of the player to move, separated by spaces (none when the game is over)
+    String legalMoves(){
+        StringBuilder sb = new StringBuilder(512);
+        lock.lock();
+        try{
+            if(chessMatch.getTermination() != Termination.NONE){
+                return "";
+            }
+            int n = chessMatch.legalMoves(moves);
+            for(int i = 0; i < n; i++){
+                if(i > 0){
+                    sb.append(' ');
+                }
+                sb.append(Move.toString(moves[i]));
+            }
+        } finally{
+            lock.unlock();
+        }
+        return sb.toString();
+    }
+
+    // FEN of the last published position, without waiting for a move in progress
+    String board(){
+        return position.toFen();
+    }
+
+    // whether a legal move goes from the source to the target of the move and promotes
+    private boolean isPromotion(String move){
+        int n = chessMatch.legalMoves(moves);
+        for(int i = 0; i < n; i++){
+            if(Move.promotion(moves[i]) != 0 && Move.toString(moves[i]).startsWith(move.substring(0, 4))){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPromotionLetter(char c){
+        return c == 'q' || c == 'r' || c == 'b' || c == 'n';
+    }
+}
@@ -0,0 +1,226 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import board.BoardException;
+import chess.ChessMatch;
+
+/**
+ * Hosts many games in one JVM. Clients connect to a TCP socket on the loopback address and send
+ * one command per line; every command gets one reply line, "ok ..." or "error <message>":
+ *
+ *   new [FEN]              -> ok <game id>
+ *   move <id> <move>       -> ok check | checkmate | stalemate | draw | -     (move like e2e4, or e7e8q promoting)
+ *   legal-moves <id>       -> ok <moves separated by spaces>
+ *   board <id>             -> ok <FEN>
+ *   close <id>             -> ok
+ *   quit                      (closes the connection)
+ *
+ * A draw is a threefold repetition, the fifty-move rule or material that can't checkmate.
+ *
+ * Every connection is served by its own thread, a virtual one when the JVM has them (Java 21+).
+ * The games are kept in a concurrent map and any connection can play on any game.
+ */
+public class GameServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 7777;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions = newThreadPerTaskExecutor("game-session");
+    private final ConcurrentHashMap<Long, Game> games = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    // open connections, closed by close() (a thread blocked reading a socket doesn't see interrupts)
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+
+    /**
+     * @param port 0 for any free port (see getPort)
+     */
+    public GameServer(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+    }
+
+    public int getPort(){
+        return serverSocket.getLocalPort();
+    }
+
+    public int getGameCount(){
+        return games.size();
+    }
+
+    // accepts connections on a new thread until close()
+    public void start(){
+        running = true;
+        Thread acceptor = new Thread(this::acceptConnections, "game-server-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void acceptConnections(){
+        while(running){
+            try{
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                sessions.execute(() -> serve(socket));
+            } catch(IOException e){
+                if(running){
+                    System.err.println("Error accepting a connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket){
+        connections.add(socket);
+        try(Socket s = socket;
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))){
+            String line;
+            while((line = in.readLine()) != null){
+                line = line.trim();
+                if(line.equals("quit")){
+                    break;
+                }
+                if(line.isEmpty()){
+                    continue;
+                }
+                out.write(execute(line));
+                out.write('\n');
+                out.flush();
+            }
+        } catch(SocketException e){
+            // the client went away
+        } catch(IOException e){
+            System.err.println("Error in a session: " + e.getMessage());
+        } finally{
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Runs one command of the protocol
+     * @return the reply line
+     */
+    String execute(String line){
+        int space = line.indexOf(' ');
+        String command = (space < 0) ? line : line.substring(0, space);
+        String rest = (space < 0) ? "" : line.substring(space + 1).trim();
+        try{
+            switch(command){
+                case "new":
+                    return "ok " + newGame(rest);
+                case "move": {
+                    int split = rest.indexOf(' ');
+                    if(split < 0){
+                        return "error Usage: move <id> <move>";
+                    }
+                    return "ok " + game(rest.substring(0, split)).move(rest.substring(split + 1).trim());
+                }
+                case "legal-moves":
+                    return "ok " + game(rest).legalMoves();
+                case "board":
+                    return "ok " + game(rest).board();
+                case "close":
+                    if(games.remove(parseId(rest)) == null){
+                        return "error Unknown game: " + rest;
+                    }
+                    return "ok";
+                default:
+                    return "error Unknown command: " + command;
+            }
+        } catch(BoardException | IllegalStateException | IllegalArgumentException e){
+            return "error " + e.getMessage();
+        }
+    }
+
+    private long newGame(String fen){
+        ChessMatch chessMatch = fen.isEmpty() ? new ChessMatch() : ChessMatch.fromFen(fen);
+        long id = nextId.getAndIncrement();
+        games.put(id, new Game(id, chessMatch));
+        return id;
+    }
+
+    private Game game(String id){
+        Game game = games.get(parseId(id));
+        if(game == null){
+            throw new IllegalArgumentException("Unknown game: " + id);
+        }
+        return game;
+    }
+
+    private static long parseId(String id){
+        try{
+            return Long.parseLong(id);
+        } catch(NumberFormatException e){
+            throw new IllegalArgumentException("Invalid game id: " + id);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for(Socket socket : connections){
+            socket.close();
+        }
+        sessions.shutdownNow();
+        try{
+            sessions.awaitTermination(1, TimeUnit.SECONDS);
+        } catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One new thread per task: virtual threads when the JVM has them (Java 21+),
+     * otherwise daemon platform threads
+     */
+    static ExecutorService newThreadPerTaskExecutor(String name){
+        try{
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException e){
+            AtomicLong count = new AtomicLong();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(null, runnable, name + "-" + count.incrementAndGet(), 256 * 1024);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    static boolean hasVirtualThreads(){
+        try{
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch(NoSuchMethodException e){
+            return false;
+        }
+    }
+
+    /**
+     * @param args [port]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        GameServer server = new GameServer(port);
+        server.start();
+        System.out.println("Chess server on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort()
+            + (hasVirtualThreads() ? " (virtual threads)" : " (platform threads)"));
+        Thread.currentThread().join();
+    }
+}
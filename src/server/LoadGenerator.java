@@ -0,0 +1,218 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Plays random games against a GameServer and measures moves/sec and the latency of the moves.
+ * The games are split between the connections; each connection plays one move in each of its
+ * games in turn (legal-moves, then move), and starts a new game when one ends.
+ */
+public class LoadGenerator {
+    // a game that gets this long is closed and replaced
+    private static final int MAX_PLIES = 200;
+
+    private String host;
+    private int port;
+    private int games;
+    private int connections;
+    private long seconds;
+
+    public LoadGenerator(String host, int port, int games, int connections, long seconds){
+        if(games < 1 || connections < 1 || connections > games){
+            throw new IllegalArgumentException("Error: needs at least one game per connection");
+        }
+        this.host = host;
+        this.port = port;
+        this.games = games;
+        this.connections = connections;
+        this.seconds = seconds;
+    }
+
+    /**
+     * Connects, creates the games, plays for the configured time and prints the results
+     */
+    public void run() throws IOException, InterruptedException {
+        List<Client> clients = new ArrayList<>();
+        for(int i = 0; i < connections; i++){
+            int share = games / connections + ((i < games % connections) ? 1 : 0);
+            clients.add(new Client(new Socket(host, port), share, i));
+        }
+        for(Client client : clients){
+            client.createGames();
+        }
+        System.out.printf("%,d games on %,d connections, playing for %d s%n", games, connections, seconds);
+
+        ExecutorService executor = GameServer.newThreadPerTaskExecutor("load-client");
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        List<Future<?>> running = new ArrayList<>();
+        for(Client client : clients){
+            running.add(executor.submit(() -> {
+                client.play(end);
+                return null;
+            }));
+        }
+        for(Future<?> future : running){
+            try{
+                future.get();
+            } catch(ExecutionException e){
+                throw new IOException("A client failed", e.getCause());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        long moves = 0;
+        long finished = 0;
+        int count = 0;
+        for(Client client : clients){
+            moves += client.moves;
+            finished += client.finishedGames;
+            count += client.latencyCount;
+        }
+        long[] latencies = new long[count];
+        int offset = 0;
+        for(Client client : clients){
+            System.arraycopy(client.latencies, 0, latencies, offset, client.latencyCount);
+            offset += client.latencyCount;
+            client.close();
+        }
+        Arrays.sort(latencies);
+
+        System.out.printf("%,d moves in %.1f s: %,d moves/sec (%,d games finished)%n",
+            moves, elapsed / 1e9, moves * 1_000_000_000L / elapsed, finished);
+        System.out.printf("move latency (us): p50 %,d  p90 %,d  p99 %,d  p99.9 %,d  max %,d%n",
+            percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+            percentile(latencies, 0.999), (count == 0) ? 0 : latencies[count - 1] / 1000);
+    }
+
+    private static long percentile(long[] sorted, double p){
+        if(sorted.length == 0){
+            return 0;
+        }
+        int index = (int)Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1000;
+    }
+
+    // one connection and its games
+    private static class Client {
+        private Socket socket;
+        private BufferedReader in;
+        private Writer out;
+        private long[] ids;
+        private int[] plies;
+        private SplittableRandom random;
+
+        private long moves;
+        private long finishedGames;
+        // round trip of every move command, in nanoseconds
+        private long[] latencies = new long[4096];
+        private int latencyCount;
+
+        Client(Socket socket, int games, long seed) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            ids = new long[games];
+            plies = new int[games];
+            random = new SplittableRandom(seed);
+        }
+
+        void createGames() throws IOException {
+            for(int i = 0; i < ids.length; i++){
+                ids[i] = Long.parseLong(request("new"));
+            }
+        }
+
+        void play(long end) throws IOException {
+            while(System.nanoTime() < end){
+                for(int i = 0; i < ids.length && System.nanoTime() < end; i++){
+                    String legal = request("legal-moves " + ids[i]);
+                    if(legal.isEmpty() || plies[i] >= MAX_PLIES){
+                        replace(i);
+                        continue;
+                    }
+                    String[] options = legal.split(" ");
+                    String move = options[random.nextInt(options.length)];
+
+                    long start = System.nanoTime();
+                    String result = request("move " + ids[i] + " " + move);
+                    record(System.nanoTime() - start);
+                    moves++;
+                    plies[i]++;
+                    if(result.equals("checkmate") || result.equals("stalemate") || result.equals("draw")){
+                        replace(i);
+                    }
+                }
+            }
+        }
+
+        private void replace(int i) throws IOException {
+            request("close " + ids[i]);
+            ids[i] = Long.parseLong(request("new"));
+            plies[i] = 0;
+            finishedGames++;
+        }
+
+        private void record(long nanos){
+            if(latencyCount == latencies.length){
+                latencies = Arrays.copyOf(latencies, latencies.length * 2);
+            }
+            latencies[latencyCount++] = nanos;
+        }
+
+        // sends one command and returns what comes after "ok "
+        private String request(String command) throws IOException {
+            out.write(command);
+            out.write('\n');
+            out.flush();
+            String reply = in.readLine();
+            if(reply == null || !reply.startsWith("ok")){
+                throw new IOException("'" + command + "' failed: " + reply);
+            }
+            return (reply.length() > 3) ? reply.substring(3) : "";
+        }
+
+        void close() throws IOException {
+            out.write("quit\n");
+            out.flush();
+            socket.close();
+        }
+    }
+
+    /**
+     * Starts a server in this JVM (or uses the one at host:port) and loads it
+     * @param args [games] [connections] [seconds] [host port]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int games = (args.length > 0) ? Integer.parseInt(args[0]) : 10_000;
+        int connections = (args.length > 1) ? Integer.parseInt(args[1]) : Math.min(games, 500);
+        long seconds = (args.length > 2) ? Long.parseLong(args[2]) : 10;
+        if(args.length > 4){
+            new LoadGenerator(args[3], Integer.parseInt(args[4]), games, connections, seconds).run();
+            return;
+        }
+        try(GameServer server = new GameServer(0)){
+            server.start();
+            System.out.println("Server on port " + server.getPort()
+                + (GameServer.hasVirtualThreads() ? " (virtual threads)" : " (platform threads)"));
+            new LoadGenerator(InetAddress.getLoopbackAddress().getHostAddress(), server.getPort(), games, connections, seconds).run();
+        }
+    }
+}
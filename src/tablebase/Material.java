@@ -0,0 +1,265 @@
+package tablebase;
+
+import chess.ColorChess;
+import chess.PieceType;
+
+/**
+ * A set of pieces like KQK or KBNK (the white pieces, then the black ones, each starting with the king)
+ * and the index of its positions in a table.
+ *
+ * The index uses the symmetries of the board: with no pawns the white king is moved to the a1-d1-d4
+ * triangle (10 squares) by flipping the board, without pawns on the files a-d (32 squares) by mirroring
+ * it. The other pieces take 6 bits each, so a table has slots * 64^(pieces - 1) positions for each
+ * player to move. Positions that are only a mirror of another one (the white king on the a1-h8
+ * diagonal, two pieces of the same type swapped) are not canonical and left out of the table.
+ */
+final class Material {
+    static final int MAX_PIECES = 5;
+    // piece order inside a side, and the letters of the name
+    private static final String LETTERS = "KQRBNP";
+    private static final PieceType[] LETTER_TYPES = {PieceType.KING, PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT, PieceType.PAWN};
+    private static final int[] VALUES = {0, 9, 5, 3, 3, 1};
+
+    // slot of the white king square, -1 when it is not in the region
+    private static final int[] TRIANGLE = new int[64];
+    private static final int[] HALF = new int[64];
+    private static final int[] TRIANGLE_SQUARES = new int[10];
+    private static final int[] HALF_SQUARES = new int[32];
+
+    static {
+        int t = 0;
+        int h = 0;
+        for(int square = 0; square < 64; square++){
+            int rank = 7 - (square >>> 3);
+            int file = square & 7;
+            TRIANGLE[square] = -1;
+            HALF[square] = -1;
+            if(rank < 4 && file < 4 && file >= rank){
+                TRIANGLE_SQUARES[t] = square;
+                TRIANGLE[square] = t++;
+            }
+            if(file < 4){
+                HALF_SQUARES[h] = square;
+                HALF[square] = h++;
+            }
+        }
+    }
+
+    final String name;
+    final int count;
+    final ColorChess[] colors;
+    final PieceType[] types;
+    final boolean pawns;
+    final int slots;
+    final long size;
+    // the pieces counted by color and type (see key())
+    final int key;
+
+    private Material(String white, String black){
+        this.name = white + black;
+        this.count = name.length();
+        this.colors = new ColorChess[count];
+        this.types = new PieceType[count];
+        boolean hasPawns = false;
+        for(int i = 0; i < count; i++){
+            colors[i] = (i < white.length()) ? ColorChess.WHITE : ColorChess.BLACK;
+            types[i] = LETTER_TYPES[LETTERS.indexOf(name.charAt(i))];
+            hasPawns |= types[i] == PieceType.PAWN;
+        }
+        this.pawns = hasPawns;
+        this.slots = hasPawns ? 32 : 10;
+        this.size = slots * (1L << (6 * (count - 1)));
+        this.key = key(colors, types, count);
+    }
+
+    /**
+     * @param name white pieces then black pieces, like KQK, KRKN or KBNK
+     */
+    static Material parse(String name){
+        name = name.toUpperCase();
+        int second = name.indexOf('K', 1);
+        if(!name.startsWith("K") || second < 0 || name.indexOf('K', second + 1) >= 0){
+            throw new IllegalArgumentException("Error: " + name + " must have one king per side (like KQK)");
+        }
+        for(int i = 0; i < name.length(); i++){
+            if(LETTERS.indexOf(name.charAt(i)) < 0){
+                throw new IllegalArgumentException("Error: unknown piece " + name.charAt(i) + " in " + name);
+            }
+        }
+        if(name.length() > MAX_PIECES){
+            throw new IllegalArgumentException("Error: tables have at most " + MAX_PIECES + " pieces");
+        }
+        String white = sort(name.substring(0, second));
+        String black = sort(name.substring(second));
+        if(white.indexOf('P') >= 0 && black.indexOf('P') >= 0){
+            // a pawn next to an other that moved two squares could take en passant, which is not in the index
+            throw new IllegalArgumentException("Error: only one side can have pawns");
+        }
+        if(isSwapped(white, black)){
+            throw new IllegalArgumentException("Error: the stronger side comes first, " + black + white + " instead of " + name);
+        }
+        return new Material(white, black);
+    }
+
+    /**
+     * @return the name of the table with these pieces, the stronger side first
+     */
+    static String name(String white, String black){
+        white = sort(white);
+        black = sort(black);
+        return isSwapped(white, black) ? black + white : white + black;
+    }
+
+    static boolean isSwapped(String white, String black){
+        int w = value(white);
+        int b = value(black);
+        return b > w || (b == w && black.compareTo(white) < 0);
+    }
+
+    private static int value(String side){
+        int value = 0;
+        for(int i = 0; i < side.length(); i++){
+            value += VALUES[LETTERS.indexOf(side.charAt(i))];
+        }
+        // for the same value, more pieces first
+        return value * 8 + side.length();
+    }
+
+    // letters in the order of LETTERS
+    static String sort(String side){
+        StringBuilder sb = new StringBuilder(side.length());
+        for(int i = 0; i < LETTERS.length(); i++){
+            for(int j = 0; j < side.length(); j++){
+                if(side.charAt(j) == LETTERS.charAt(i)){
+                    sb.append(side.charAt(j));
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    static char letter(PieceType type){
+        for(int i = 0; i < LETTER_TYPES.length; i++){
+            if(LETTER_TYPES[i] == type){
+                return LETTERS.charAt(i);
+            }
+        }
+        throw new IllegalArgumentException("Error: no letter for " + type);
+    }
+
+    // no side can mate: the positions are draws without a table
+    static boolean isDrawn(String name){
+        return name.equals("KK") || name.equals("KBK") || name.equals("KNK");
+    }
+
+    /**
+     * Number of pieces of each color and type but the kings, 3 bits each (black ones first), so
+     * probing finds the table without building its name
+     */
+    static int key(ColorChess[] colors, PieceType[] types, int count){
+        int key = 0;
+        for(int i = 0; i < count; i++){
+            if(types[i] != PieceType.KING){
+                key += 1 << (3 * (colors[i].ordinal() * 5 + types[i].ordinal()));
+            }
+        }
+        return key;
+    }
+
+    // the key with the colors swapped
+    static int mirror(int key){
+        return ((key & 0x7FFF) << 15) | (key >>> 15);
+    }
+
+    // same as isDrawn(String) with the key: no pieces but the kings, or one bishop or knight
+    static boolean isDrawn(int key){
+        int minor = (1 << (3 * PieceType.KNIGHT.ordinal())) | (1 << (3 * PieceType.BISHOP.ordinal()));
+        int minors = minor | (minor << 15);
+        return key == 0 || (Integer.bitCount(key) == 1 && (key & minors) != 0);
+    }
+
+    /**
+     * Index of the position, the squares in the order of the pieces (changed to the canonical ones)
+     */
+    long index(int[] squares){
+        canonical(squares);
+        long index = pawns ? HALF[squares[0]] : TRIANGLE[squares[0]];
+        for(int i = 1; i < count; i++){
+            index = (index << 6) | squares[i];
+        }
+        return index;
+    }
+
+    /**
+     * Squares of the position with the index, in the order of the pieces
+     */
+    void squares(long index, int[] squares){
+        for(int i = count - 1; i > 0; i--){
+            squares[i] = (int)(index & 63);
+            index >>>= 6;
+        }
+        squares[0] = pawns ? HALF_SQUARES[(int)index] : TRIANGLE_SQUARES[(int)index];
+    }
+
+    // moves the white king to its region and sorts the pieces of the same type
+    private void canonical(int[] squares){
+        int king = squares[0];
+        int flip = 0;
+        if((king & 7) > 3){
+            flip |= 7;
+        }
+        if(!pawns && (king >>> 3) < 4){
+            flip |= 56;
+        }
+        if(flip != 0){
+            for(int i = 0; i < count; i++){
+                squares[i] ^= flip;
+            }
+        }
+        if(pawns){
+            sortSameType(squares);
+            return;
+        }
+        int rank = 7 - (squares[0] >>> 3);
+        int file = squares[0] & 7;
+        if(file < rank){
+            transpose(squares);
+            sortSameType(squares);
+        } else if(file == rank){
+            // on the diagonal both sides of it are the same position: the smaller squares are kept
+            sortSameType(squares);
+            int[] other = squares.clone();
+            transpose(other);
+            sortSameType(other);
+            for(int i = 1; i < count; i++){
+                if(other[i] != squares[i]){
+                    if(other[i] < squares[i]){
+                        System.arraycopy(other, 0, squares, 0, count);
+                    }
+                    break;
+                }
+            }
+        } else{
+            sortSameType(squares);
+        }
+    }
+
+    // flip along the a1-h8 diagonal
+    private void transpose(int[] squares){
+        for(int i = 0; i < count; i++){
+            int row = squares[i] >>> 3;
+            int column = squares[i] & 7;
+            squares[i] = (7 - column) * 8 + (7 - row);
+        }
+    }
+
+    private void sortSameType(int[] squares){
+        for(int i = 1; i < count; i++){
+            for(int j = i; j > 0 && types[j] == types[j - 1] && colors[j] == colors[j - 1] && squares[j] < squares[j - 1]; j--){
+                int s = squares[j];
+                squares[j] = squares[j - 1];
+                squares[j - 1] = s;
+            }
+        }
+    }
+}
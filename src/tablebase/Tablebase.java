@@ -0,0 +1,129 @@
+package tablebase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One endgame table (like KQK.tb) as TablebaseGenerator writes it, memory-mapped read-only.
+ *
+ * The file has a header of 32 bytes (magic, bits per position, positions per player, name of the
+ * material) and then, for white to move and for black to move, one value per position packed in
+ * 64 bit words (64 / bits values in each, none split between two words). A value is 0 for a draw
+ * and distance to mate in plies + 1 otherwise: odd distances are wins for the player to move, even
+ * ones losses (0 = checkmated).
+ */
+public class Tablebase {
+    static final int MAGIC = 0x54424C31;
+    static final int HEADER_SIZE = 32;
+    private static final int NAME_SIZE = 16;
+
+    private final Material material;
+    private final MappedByteBuffer data;
+    private final int bits;
+    private final int perWord;
+    private final long mask;
+    private final long words;
+
+    private Tablebase(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            if(channel.size() > Integer.MAX_VALUE){
+                throw new IllegalArgumentException("Error: tables bigger than 2 GB are not supported");
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if(data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC){
+            throw new IllegalArgumentException("Error: " + file + " is not a table");
+        }
+        bits = data.getInt(4);
+        long size = data.getLong(8);
+        byte[] name = new byte[NAME_SIZE];
+        data.get(16, name);
+        material = Material.parse(new String(name, StandardCharsets.US_ASCII).trim());
+        perWord = 64 / bits;
+        mask = (1L << bits) - 1;
+        words = (size + perWord - 1) / perWord;
+        if(size != material.size || data.capacity() < HEADER_SIZE + 2 * words * 8){
+            throw new IllegalArgumentException("Error: " + file + " is truncated");
+        }
+    }
+
+    public static Tablebase open(Path file) throws IOException {
+        return new Tablebase(file);
+    }
+
+    // like KQK: the white pieces, then the black ones
+    public String getMaterial(){
+        return material.name;
+    }
+
+    // positions for each player to move, the ones left out by the symmetries included
+    public long getPositions(){
+        return material.size;
+    }
+
+    public int getBits(){
+        return bits;
+    }
+
+    public long getBytes(){
+        return data.capacity();
+    }
+
+    Material material(){
+        return material;
+    }
+
+    /**
+     * @param side 0 white to move, 1 black to move
+     * @return 0 for a draw, distance to mate in plies + 1 otherwise
+     */
+    int value(int side, long index){
+        long word = data.getLong(HEADER_SIZE + (int)((side * words + index / perWord) * 8));
+        return (int)((word >>> ((index % perWord) * bits)) & mask);
+    }
+
+    /**
+     * Writes the values (0 draw, distance + 1 otherwise) of both players to move
+     */
+    static void write(Path file, Material material, byte[][] values, int maxValue) throws IOException {
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(maxValue));
+        int perWord = 64 / bits;
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        buffer.putInt(MAGIC).putInt(bits).putLong(material.size);
+        byte[] name = new byte[NAME_SIZE];
+        byte[] ascii = material.name.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(ascii, 0, name, 0, ascii.length);
+        for(int i = ascii.length; i < NAME_SIZE; i++){
+            name[i] = ' ';
+        }
+        buffer.put(name);
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            for(byte[] side : values){
+                for(long start = 0; start < material.size; start += perWord){
+                    long word = 0;
+                    for(int i = 0; i < perWord && start + i < material.size; i++){
+                        word |= (long)(side[(int)(start + i)] & 0xFF) << (i * bits);
+                    }
+                    if(buffer.remaining() < 8){
+                        flush(channel, buffer);
+                    }
+                    buffer.putLong(word);
+                }
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
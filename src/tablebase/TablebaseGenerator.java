@@ -0,0 +1,590 @@
+package tablebase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chess.Bitboards;
+import chess.ColorChess;
+import chess.PieceType;
+
+/**
+ * Builds endgame tables (KQK, KRK, KPK, KBNK, ... up to 5 pieces) by retrograde analysis.
+ *
+ * First every position is marked as invalid, checkmate, stalemate or unknown, and the moves that
+ * capture or promote are looked up in the smaller tables (made before, or found in the directory).
+ * Then step n finds the positions one move before the ones solved at step n - 1: taking back a move
+ * of the other side from a lost position gives wins in n plies, and from a won position gives the
+ * positions whose moves may all lose, checked by playing them. The positions left are draws.
+ *
+ * The moves follow the rules of chess.MoveGenerator with the attack tables of Bitboards; castling
+ * and en passant can't happen in these tables (no rooks at home with rights, pawns on one side only).
+ * Every step splits the positions between the threads, which write different positions (or the same
+ * value to the same one), so the arrays are shared without locks.
+ */
+public class TablebaseGenerator {
+    // values while generating: 0 unknown, distance + 1 when solved, PENDING | (distance + 1) when
+    // known but solved at a later step (a capture or promotion that mates later than the steps so far)
+    private static final int PENDING = 0x80;
+    private static final int STALEMATE = 0xFE;
+    private static final int INVALID = 0xFF;
+    private static final int MAX_DISTANCE = 124;
+    private static final int CHUNK = 1 << 14;
+    private static final PieceType[] PROMOTIONS = {PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT};
+
+    private final int threads;
+    private final Tablebases tablebases = new Tablebases();
+
+    public TablebaseGenerator(int threads){
+        if(threads < 1){
+            throw new IllegalArgumentException("Error: threads must be at least 1");
+        }
+        this.threads = threads;
+    }
+
+    // the tables made (or opened for the captures) so far
+    public Tablebases getTablebases(){
+        return tablebases;
+    }
+
+    /**
+     * Makes the table (like KQK) in the directory as <material>.tb, after the smaller tables it needs
+     * that are not in the directory yet
+     */
+    public Tablebase generate(String name, Path directory) throws IOException {
+        Material material = Material.parse(name);
+        Files.createDirectories(directory);
+        for(String smaller : smallerTables(material)){
+            if(Material.isDrawn(smaller) || tablebases.get(smaller) != null){
+                continue;
+            }
+            Path file = directory.resolve(smaller + ".tb");
+            if(Files.exists(file)){
+                tablebases.add(Tablebase.open(file));
+            } else{
+                generate(smaller, directory);
+            }
+        }
+
+        byte[][] values = solve(material);
+        int maxValue = 0;
+        for(byte[] side : values){
+            for(int i = 0; i < side.length; i++){
+                int value = side[i] & 0xFF;
+                if(value == STALEMATE || value == INVALID){
+                    value = 0;
+                } else if(value >= PENDING){
+                    throw new IllegalStateException("Error: position " + i + " of " + material.name + " was never solved");
+                }
+                side[i] = (byte)value;
+                maxValue = Math.max(maxValue, value);
+            }
+        }
+        Path file = directory.resolve(material.name + ".tb");
+        Tablebase.write(file, material, values, maxValue);
+        Tablebase table = Tablebase.open(file);
+        tablebases.add(table);
+        return table;
+    }
+
+    // tables after a capture (of anything but a king) or a promotion
+    private static List<String> smallerTables(Material material){
+        List<String> names = new ArrayList<>();
+        String white = material.name.substring(0, material.name.indexOf('K', 1));
+        String black = material.name.substring(white.length());
+        for(int i = 1; i < white.length(); i++){
+            addTable(names, Material.name(remove(white, i), black));
+            if(white.charAt(i) == 'P'){
+                for(PieceType promotion : PROMOTIONS){
+                    addTable(names, Material.name(replace(white, i, promotion), black));
+                }
+            }
+        }
+        for(int i = 1; i < black.length(); i++){
+            addTable(names, Material.name(white, remove(black, i)));
+            if(black.charAt(i) == 'P'){
+                for(PieceType promotion : PROMOTIONS){
+                    addTable(names, Material.name(white, replace(black, i, promotion)));
+                }
+            }
+        }
+        return names;
+    }
+
+    private static void addTable(List<String> names, String name){
+        if(!names.contains(name)){
+            names.add(name);
+        }
+    }
+
+    private static String remove(String side, int i){
+        return side.substring(0, i) + side.substring(i + 1);
+    }
+
+    private static String replace(String side, int i, PieceType type){
+        return side.substring(0, i) + Material.letter(type) + side.substring(i + 1);
+    }
+
+    /**
+     * @return the values of the positions for white and for black to move
+     */
+    private byte[][] solve(Material material){
+        if(material.size > Integer.MAX_VALUE - 8){
+            throw new IllegalArgumentException("Error: " + material.name + " is too big to generate");
+        }
+        byte[][] values = new byte[2][(int)material.size];
+        AtomicInteger maxPending = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tablebase-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try{
+            run(pool, material, values, maxPending, (worker, start, end) -> worker.initialize(start, end));
+            for(int n = 1; ; n++){
+                if(n > MAX_DISTANCE){
+                    throw new IllegalStateException("Error: " + material.name + " has mates longer than " + MAX_DISTANCE + " plies");
+                }
+                final int step = n;
+                long solved = run(pool, material, values, maxPending, (worker, start, end) -> worker.step(step, start, end));
+                solved += run(pool, material, values, maxPending, (worker, start, end) -> worker.solvePending(step, start, end));
+                if(solved == 0 && n > maxPending.get()){
+                    break;
+                }
+            }
+        } finally{
+            pool.shutdownNow();
+        }
+        return values;
+    }
+
+    // one pass over the positions
+    private interface Pass {
+        long run(Worker worker, long start, long end);
+    }
+
+    // runs the pass on every chunk of positions and adds up the positions solved
+    private long run(ExecutorService pool, Material material, byte[][] values, AtomicInteger maxPending, Pass pass){
+        AtomicLong next = new AtomicLong();
+        List<Future<Long>> running = new ArrayList<>();
+        for(int i = 0; i < threads; i++){
+            running.add(pool.submit(() -> {
+                Worker worker = new Worker(material, values, maxPending);
+                long solved = 0;
+                for(long start = next.getAndAdd(CHUNK); start < material.size; start = next.getAndAdd(CHUNK)){
+                    solved += pass.run(worker, start, Math.min(material.size, start + CHUNK));
+                }
+                return solved;
+            }));
+        }
+        long solved = 0;
+        try{
+            for(Future<Long> future : running){
+                solved += future.get();
+            }
+        } catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Error: interrupted while generating " + material.name);
+        } catch(ExecutionException e){
+            if(e.getCause() instanceof RuntimeException){
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IllegalStateException("A tablebase generator thread failed", e.getCause());
+        }
+        return solved;
+    }
+
+    private static ColorChess color(int side){
+        return (side == 0) ? ColorChess.WHITE : ColorChess.BLACK;
+    }
+
+    private static int row(int square){
+        return square >>> 3;
+    }
+
+    private static long attacks(PieceType type, ColorChess color, int square, long occupied){
+        switch(type){
+            case PAWN: return Bitboards.pawnAttacks(color, square);
+            case KNIGHT: return Bitboards.knightAttacks(square);
+            case BISHOP: return Bitboards.bishopAttacks(square, occupied);
+            case ROOK: return Bitboards.rookAttacks(square, occupied);
+            case QUEEN: return Bitboards.queenAttacks(square, occupied);
+            default: return Bitboards.kingAttacks(square);
+        }
+    }
+
+    /**
+     * The work of one thread, with its own copies of the positions it looks at
+     */
+    private class Worker {
+        private final Material material;
+        private final byte[][] values;
+        private final AtomicInteger maxPending;
+        private final int count;
+        private final int[] squares;
+        private final int[] before;
+        private final int[] copy;
+
+        // the position after a move, some pieces captured or promoted
+        private final ColorChess[] childColors;
+        private final PieceType[] childTypes;
+        private final int[] childSquares;
+        private int childCount;
+
+        // what the moves of a position lead to (see moves())
+        private int legalMoves;
+        private int shortestWin;
+        private int longestLoss;
+        private boolean allLose;
+
+        Worker(Material material, byte[][] values, AtomicInteger maxPending){
+            this.material = material;
+            this.values = values;
+            this.maxPending = maxPending;
+            this.count = material.count;
+            this.squares = new int[count];
+            this.before = new int[count];
+            this.copy = new int[count];
+            this.childColors = new ColorChess[count];
+            this.childTypes = new PieceType[count];
+            this.childSquares = new int[count];
+        }
+
+        /**
+         * Marks the invalid positions, the checkmates and stalemates, and the positions solved by a
+         * capture or a promotion
+         */
+        long initialize(long start, long end){
+            for(long index = start; index < end; index++){
+                material.squares(index, squares);
+                boolean valid = isValid(index);
+                for(int side = 0; side < 2; side++){
+                    // the player who just moved can't be in check
+                    if(!valid || isAttacked(material.colors, material.types, squares, count, king(1 - side, squares), color(side))){
+                        values[side][(int)index] = (byte)INVALID;
+                        continue;
+                    }
+                    moves(squares, side, false);
+                    int value = 0;
+                    if(legalMoves == 0){
+                        value = isAttacked(material.colors, material.types, squares, count, king(side, squares), color(1 - side)) ? 1 : STALEMATE;
+                    } else if(shortestWin > 0){
+                        value = PENDING | pending(shortestWin);
+                    } else if(allLose){
+                        value = PENDING | pending(longestLoss);
+                    }
+                    values[side][(int)index] = (byte)value;
+                }
+            }
+            return 0;
+        }
+
+        private boolean isValid(long index){
+            long occupied = 0;
+            for(int i = 0; i < count; i++){
+                long bit = Bitboards.bit(squares[i]);
+                if((occupied & bit) != 0){
+                    return false;
+                }
+                occupied |= bit;
+                if(material.types[i] == PieceType.PAWN && (row(squares[i]) == 0 || row(squares[i]) == 7)){
+                    return false;
+                }
+            }
+            // the same position is also stored under its canonical index
+            System.arraycopy(squares, 0, copy, 0, count);
+            return material.index(copy) == index;
+        }
+
+        private int pending(int distance){
+            if(distance > MAX_DISTANCE){
+                throw new IllegalStateException("Error: " + material.name + " has mates longer than " + MAX_DISTANCE + " plies");
+            }
+            maxPending.accumulateAndGet(distance, Math::max);
+            return distance + 1;
+        }
+
+        /**
+         * Takes back the moves that lead to the positions solved at step n - 1
+         */
+        long step(int n, long start, long end){
+            long solved = 0;
+            for(int side = 0; side < 2; side++){
+                byte[] found = values[side];
+                for(long index = start; index < end; index++){
+                    if((found[(int)index] & 0xFF) == n){
+                        material.squares(index, squares);
+                        solved += unmoves(side, n);
+                    }
+                }
+            }
+            return solved;
+        }
+
+        // the positions before a move of the other side, to the position in squares (side to move)
+        private long unmoves(int side, int n){
+            int mover = 1 - side;
+            ColorChess color = color(mover);
+            long occupied = 0;
+            for(int i = 0; i < count; i++){
+                occupied |= Bitboards.bit(squares[i]);
+            }
+            long solved = 0;
+            for(int i = 0; i < count; i++){
+                if(material.colors[i] != color){
+                    continue;
+                }
+                int to = squares[i];
+                long from;
+                if(material.types[i] == PieceType.PAWN){
+                    // pawns only go forward: white ones to row 0, black ones to row 7
+                    int back = (color == ColorChess.WHITE) ? 8 : -8;
+                    int start = (color == ColorChess.WHITE) ? 6 : 1;
+                    from = 0;
+                    int single = to + back;
+                    if(single >= 8 && single < 56 && (occupied & Bitboards.bit(single)) == 0){
+                        from |= Bitboards.bit(single);
+                        if(row(to + 2 * back) == start && (occupied & Bitboards.bit(to + 2 * back)) == 0){
+                            from |= Bitboards.bit(to + 2 * back);
+                        }
+                    }
+                } else{
+                    from = attacks(material.types[i], color, to, occupied) & ~occupied;
+                }
+                for(; from != 0; from &= from - 1){
+                    System.arraycopy(squares, 0, before, 0, count);
+                    before[i] = Long.numberOfTrailingZeros(from);
+                    solved += before(mover, material.index(before), n);
+                }
+            }
+            return solved;
+        }
+
+        // a position (mover to move) with a move to a position solved at step n - 1
+        private int before(int mover, long index, int n){
+            byte[] found = values[mover];
+            int value = found[(int)index] & 0xFF;
+            if(value == INVALID || value == STALEMATE){
+                return 0;
+            }
+            if(n % 2 == 1){
+                // the move reaches a loss of the other side: a win in n, unless a shorter one is known
+                if(value == 0 || value >= PENDING){
+                    found[(int)index] = (byte)(n + 1);
+                    return 1;
+                }
+                return 0;
+            }
+            // the move reaches a win of the other side: lost when every other move is lost as well
+            if(value != 0){
+                return 0;
+            }
+            material.squares(index, before);
+            moves(before, mover, true);
+            if(!allLose){
+                return 0;
+            }
+            if(longestLoss == n){
+                found[(int)index] = (byte)(n + 1);
+                return 1;
+            }
+            found[(int)index] = (byte)(PENDING | pending(longestLoss));
+            return 0;
+        }
+
+        // the positions whose distance (found before their step) is n
+        long solvePending(int n, long start, long end){
+            long solved = 0;
+            for(int side = 0; side < 2; side++){
+                byte[] found = values[side];
+                for(long index = start; index < end; index++){
+                    if((found[(int)index] & 0xFF) == (PENDING | (n + 1))){
+                        found[(int)index] = (byte)(n + 1);
+                        solved++;
+                    }
+                }
+            }
+            return solved;
+        }
+
+        /**
+         * Plays every legal move of the position and sets legalMoves, shortestWin (distance of the
+         * fastest win through a move, 0 if none) and allLose with longestLoss (every move reaches a
+         * win of the other side, the slowest one). The moves that stay in this table are only looked
+         * up when inTable is true, otherwise they count as unknown.
+         */
+        private void moves(int[] position, int side, boolean inTable){
+            legalMoves = 0;
+            shortestWin = 0;
+            longestLoss = 0;
+            allLose = true;
+            ColorChess color = color(side);
+            long occupied = 0;
+            long own = 0;
+            for(int i = 0; i < count; i++){
+                occupied |= Bitboards.bit(position[i]);
+                if(material.colors[i] == color){
+                    own |= Bitboards.bit(position[i]);
+                }
+            }
+            // the other king is never taken: a position where it could is invalid
+            long targets = ~own & ~Bitboards.bit(king(1 - side, position));
+            for(int i = 0; i < count; i++){
+                if(material.colors[i] != color){
+                    continue;
+                }
+                int from = position[i];
+                if(material.types[i] == PieceType.PAWN){
+                    int forward = (color == ColorChess.WHITE) ? -8 : 8;
+                    int start = (color == ColorChess.WHITE) ? 6 : 1;
+                    int to = from + forward;
+                    if((occupied & Bitboards.bit(to)) == 0){
+                        pawnMove(position, side, i, to, inTable);
+                        if(row(from) == start && (occupied & Bitboards.bit(to + forward)) == 0){
+                            move(position, side, i, to + forward, null, inTable);
+                        }
+                    }
+                    for(long captures = Bitboards.pawnAttacks(color, from) & occupied & targets; captures != 0; captures &= captures - 1){
+                        pawnMove(position, side, i, Long.numberOfTrailingZeros(captures), inTable);
+                    }
+                } else{
+                    for(long moves = attacks(material.types[i], color, from, occupied) & targets; moves != 0; moves &= moves - 1){
+                        move(position, side, i, Long.numberOfTrailingZeros(moves), null, inTable);
+                    }
+                }
+            }
+            if(legalMoves == 0){
+                allLose = false;
+            }
+        }
+
+        private void pawnMove(int[] position, int side, int piece, int to, boolean inTable){
+            if(row(to) == 0 || row(to) == 7){
+                for(PieceType promotion : PROMOTIONS){
+                    move(position, side, piece, to, promotion, inTable);
+                }
+            } else{
+                move(position, side, piece, to, null, inTable);
+            }
+        }
+
+        private void move(int[] position, int side, int piece, int to, PieceType promotion, boolean inTable){
+            // the position after the move, without the piece taken
+            childCount = 0;
+            boolean capture = false;
+            for(int i = 0; i < count; i++){
+                if(i != piece && position[i] == to){
+                    capture = true;
+                    continue;
+                }
+                childColors[childCount] = material.colors[i];
+                childTypes[childCount] = (i == piece && promotion != null) ? promotion : material.types[i];
+                childSquares[childCount++] = (i == piece) ? to : position[i];
+            }
+            ColorChess color = color(side);
+            int king = -1;
+            for(int i = 0; i < childCount && king < 0; i++){
+                if(childColors[i] == color && childTypes[i] == PieceType.KING){
+                    king = i;
+                }
+            }
+            if(isAttacked(childColors, childTypes, childSquares, childCount, childSquares[king], color(1 - side))){
+                return;
+            }
+            legalMoves++;
+
+            // distance for the other side, -1 when unknown or drawn
+            int distance;
+            if(capture || promotion != null){
+                distance = tablebases.probe(childColors, childTypes, childSquares, childCount, color(1 - side));
+                if(distance == Tablebases.NOT_FOUND){
+                    throw new IllegalStateException("Error: no table for a move of " + material.name);
+                }
+            } else if(inTable){
+                int value = values[1 - side][(int)material.index(childSquares)] & 0xFF;
+                distance = (value > 0 && value < PENDING) ? value - 1 : -1;
+            } else{
+                distance = -1;
+            }
+
+            if(distance >= 0 && distance % 2 == 0){
+                // the other side loses
+                allLose = false;
+                if(shortestWin == 0 || distance + 1 < shortestWin){
+                    shortestWin = distance + 1;
+                }
+            } else if(distance >= 0){
+                longestLoss = Math.max(longestLoss, distance + 1);
+            } else{
+                allLose = false;
+            }
+        }
+
+        private int king(int side){
+            for(int i = 0; i < count; i++){
+                if(material.colors[i] == color(side) && material.types[i] == PieceType.KING){
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Error: " + material.name + " has no king");
+        }
+
+        private int king(int side, int[] position){
+            return position[king(side)];
+        }
+
+        // true if a piece of the color attacks the square
+        private boolean isAttacked(ColorChess[] colors, PieceType[] types, int[] position, int pieces, int square, ColorChess color){
+            long occupied = 0;
+            for(int i = 0; i < pieces; i++){
+                occupied |= Bitboards.bit(position[i]);
+            }
+            for(int i = 0; i < pieces; i++){
+                if(colors[i] == color && (attacks(types[i], color, position[i], occupied) & Bitboards.bit(square)) != 0){
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Makes tables and prints their size
+     * @param args directory, materials (like KQK KRK KBNK), [threads]
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2){
+            System.out.println("Usage: TablebaseGenerator <directory> <material>... [threads]");
+            return;
+        }
+        int last = args.length;
+        int threads = 1;
+        if(args[last - 1].matches("\\d+")){
+            threads = Integer.parseInt(args[--last]);
+        }
+        Path directory = Paths.get(args[0]);
+        TablebaseGenerator generator = new TablebaseGenerator(threads);
+        for(int i = 1; i < last; i++){
+            long start = System.nanoTime();
+            Tablebase table = generator.generate(args[i], directory);
+            long elapsed = System.nanoTime() - start;
+            int longest = 0;
+            for(int side = 0; side < 2; side++){
+                for(long index = 0; index < table.getPositions(); index++){
+                    longest = Math.max(longest, table.value(side, index));
+                }
+            }
+            System.out.printf("%s: %,d positions, %d bits, %,d bytes, longest mate %d plies, %.2f s%n",
+                table.getMaterial(), 2 * table.getPositions(), table.getBits(), table.getBytes(), longest - 1, elapsed / 1e9);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package tablebase;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import chess.ChessMatch;
+import chess.ColorChess;
+import chess.Move;
+import chess.PieceType;
+
+/**
+ * The endgame tables of a directory, probed with a ChessMatch: the table of the pieces on the board
+ * is found whichever side has them (KQK also answers the positions of a black queen).
+ * Tables don't change after they are open, so probing can be done by any number of threads.
+ */
+public class Tablebases {
+    // no table for the pieces on the board (or castling is still possible)
+    public static final int NOT_FOUND = -2;
+    public static final int DRAW = -1;
+
+    private static final ColorChess[] COLORS = ColorChess.values();
+    private static final PieceType[] TYPES = PieceType.values();
+
+    private final Map<String, Tablebase> tables = new TreeMap<>();
+    // the tables by Material.key, under both colors
+    private final Map<Integer, Tablebase> byKey = new HashMap<>();
+
+    /**
+     * Opens every table (.tb) of the directory
+     */
+    public static Tablebases open(Path directory) throws IOException {
+        Tablebases tablebases = new Tablebases();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.tb")){
+            for(Path file : files){
+                tablebases.add(Tablebase.open(file));
+            }
+        }
+        return tablebases;
+    }
+
+    public void add(Tablebase table){
+        tables.put(table.getMaterial(), table);
+        byKey.put(Material.mirror(table.material().key), table);
+        byKey.put(table.material().key, table);
+    }
+
+    public Tablebase get(String material){
+        return tables.get(material);
+    }
+
+    public Collection<Tablebase> getTables(){
+        return tables.values();
+    }
+
+    /**
+     * @return distance to mate in plies with best play for both sides (odd: the player to move wins,
+     * even: it loses, 0 when it is checkmated), DRAW, or NOT_FOUND
+     */
+    public int probe(ChessMatch chessMatch){
+        if(Long.bitCount(chessMatch.getOccupied()) > Material.MAX_PIECES){
+            return NOT_FOUND;
+        }
+        ColorChess[] colors = new ColorChess[Material.MAX_PIECES];
+        PieceType[] types = new PieceType[Material.MAX_PIECES];
+        int[] squares = new int[Material.MAX_PIECES];
+        int count = 0;
+        for(ColorChess color : COLORS){
+            for(PieceType type : TYPES){
+                for(long pieces = chessMatch.getBitboard(color, type); pieces != 0; pieces &= pieces - 1){
+                    colors[count] = color;
+                    types[count] = type;
+                    squares[count++] = Long.numberOfTrailingZeros(pieces);
+                }
+            }
+        }
+        // castling needs a rook
+        long rooks = chessMatch.getBitboard(ColorChess.WHITE, PieceType.ROOK) | chessMatch.getBitboard(ColorChess.BLACK, PieceType.ROOK);
+        if(rooks != 0 && chessMatch.snapshot().getCastlingRights() != 0){
+            return NOT_FOUND;
+        }
+        // after a checkmate the match keeps the winner as current player
+        ColorChess player = chessMatch.getCurrentPlayer();
+        if(chessMatch.getCheckMate()){
+            player = (player == ColorChess.WHITE) ? ColorChess.BLACK : ColorChess.WHITE;
+        }
+        return probe(colors, types, squares, count, player);
+    }
+
+    /**
+     * Same as probe(ChessMatch), for a list of pieces (the arrays are not changed)
+     */
+    int probe(ColorChess[] colors, PieceType[] types, int[] squares, int count, ColorChess player){
+        int key = Material.key(colors, types, count);
+        if(Material.isDrawn(key)){
+            return DRAW;
+        }
+        Tablebase table = byKey.get(key);
+        if(table == null){
+            return NOT_FOUND;
+        }
+
+        // the pieces in the order of the table, with the colors (and the board) swapped when the table has them the other way
+        Material material = table.material();
+        boolean swapped = key != material.key;
+        int[] ordered = new int[material.count];
+        boolean[] used = new boolean[count];
+        for(int i = 0; i < material.count; i++){
+            for(int j = 0; j < count; j++){
+                ColorChess color = swapped ? opponent(colors[j]) : colors[j];
+                if(!used[j] && color == material.colors[i] && types[j] == material.types[i]){
+                    used[j] = true;
+                    ordered[i] = swapped ? squares[j] ^ 56 : squares[j];
+                    break;
+                }
+            }
+        }
+        ColorChess side = swapped ? opponent(player) : player;
+        int value = table.value((side == ColorChess.WHITE) ? 0 : 1, material.index(ordered));
+        return (value == 0) ? DRAW : value - 1;
+    }
+
+    private static ColorChess opponent(ColorChess color){
+        return (color == ColorChess.WHITE) ? ColorChess.BLACK : ColorChess.WHITE;
+    }
+
+    /**
+     * @return the move that mates the fastest when the position is won, keeps the draw when it is drawn and
+     * is mated the slowest when it is lost; Move.NONE when there is no legal move or the position (or one after
+     * a move) is not in the tables
+     */
+    public int bestMove(ChessMatch chessMatch){
+        // nothing to play on a checkmate (the turn is still the winner's) or a stalemate
+        if(chessMatch.getCheckMate() || probe(chessMatch) == NOT_FOUND){
+            return Move.NONE;
+        }
+        int[] moves = new int[Move.MAX_MOVES];
+        int count = chessMatch.legalMoves(moves);
+        if(count == 0){
+            return Move.NONE;
+        }
+        int best = Move.NONE;
+        int bestScore = Integer.MIN_VALUE;
+        for(int i = 0; i < count; i++){
+            chessMatch.makeMove(moves[i]);
+            int value = probe(chessMatch);
+            chessMatch.undoMove();
+            if(value == NOT_FOUND){
+                return Move.NONE;
+            }
+            // the value is for the opponent: its losses are the best moves, the shortest first
+            int score;
+            if(value == DRAW){
+                score = 0;
+            } else if(value % 2 == 0){
+                score = 1000 - value;
+            } else{
+                score = -1000 + value;
+            }
+            if(score > bestScore){
+                best = moves[i];
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+}